@@ -0,0 +1,64 @@
+/*****************************************************************************
+ * Copyright (C) Codehaus.org                                                *
+ * ------------------------------------------------------------------------- *
+ * Licensed under the Apache License, Version 2.0 (the "License");           *
+ * you may not use this file except in compliance with the License.          *
+ * You may obtain a copy of the License at                                   *
+ *                                                                           *
+ * http://www.apache.org/licenses/LICENSE-2.0                                *
+ *                                                                           *
+ * Unless required by applicable law or agreed to in writing, software       *
+ * distributed under the License is distributed on an "AS IS" BASIS,         *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  *
+ * See the License for the specific language governing permissions and       *
+ * limitations under the License.                                            *
+ *****************************************************************************/
+package org.codehaus.jparsec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a parser at most once per position of a {@link ParseContext}, replaying its outcome
+ * and the errors it raised when it runs again at the same position, so that the error reported
+ * does not depend on which alternative ran it first.
+ */
+final class MemoParser<T> extends Parser<T> {
+  private static final AtomicInteger ids = new AtomicInteger();
+  
+  private final Parser<T> p;
+  private final int id = ids.getAndIncrement();
+
+  MemoParser(Parser<T> p) {
+    this.p = p;
+  }
+
+  @Override boolean apply(ParseContext ctxt) {
+    final int at = ctxt.at;
+    final int step = ctxt.step;
+    ParseContext.Memo memo = ctxt.getMemo(id, at);
+    // A run with error recording suppressed has no error to replay where errors are recorded.
+    if (memo == null || (memo.suppressed && !ctxt.isErrorSuppressed())) {
+      ArrayList<ParseContext.ErrorEvent> outer = ctxt.startRecording();
+      boolean ok;
+      List<ParseContext.ErrorEvent> errors;
+      try {
+        ok = p.run(ctxt);
+      } finally {
+        errors = ctxt.stopRecording(outer);
+      }
+      memo = new ParseContext.Memo(
+          ok, ctxt.result, ctxt.at, ctxt.step - step, errors, ctxt.isErrorSuppressed());
+      ctxt.putMemo(id, at, memo);
+      return ok;
+    }
+    ctxt.set(step + memo.steps, memo.end, memo.result);
+    ctxt.replay(memo.errors);
+    return memo.ok;
+  }
+  
+  @Override public String toString() {
+    return p.toString();
+  }
+}
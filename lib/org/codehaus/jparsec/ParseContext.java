@@ -16,6 +16,7 @@
 package org.codehaus.jparsec;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 import org.codehaus.jparsec.annotations.Private;
@@ -81,6 +82,97 @@ abstract class ParseContext {
   // explicit suppresses error recording if true.
   private boolean errorSuppressed = false;
   
+  /** Outcomes of the memoized parsers, by parser and position. Created on first use. */
+  private HashMap<Long, Memo> memos = null;
+  
+  /** Errors recorded for the memoized parser running, {@code null} if none is. */
+  private ArrayList<ErrorEvent> recording = null;
+  
+  /** Outcome of a memoized parser run at a position. */
+  static final class Memo {
+    final boolean ok;
+    final Object result;
+    final int end;
+    final int steps;
+    
+    /** The errors recorded by the run, replayed with its outcome. */
+    final List<ErrorEvent> errors;
+    
+    /** Whether error recording was suppressed during the run, so that no error was recorded. */
+    final boolean suppressed;
+    
+    Memo(boolean ok, Object result, int end, int steps, List<ErrorEvent> errors, boolean suppressed) {
+      this.ok = ok;
+      this.result = result;
+      this.end = end;
+      this.steps = steps;
+      this.errors = errors;
+      this.suppressed = suppressed;
+    }
+  }
+  
+  /** A change of the error state, recorded while a memoized parser runs. */
+  abstract static class ErrorEvent {
+    
+    /** Applies the change again to {@code ctxt}. */
+    abstract void replay(ParseContext ctxt);
+  }
+  
+  /** Returns the outcome of the memoized parser {@code id} at {@code at}, {@code null} if none. */
+  final Memo getMemo(int id, int at) {
+    return memos == null ? null : memos.get(memoKey(id, at));
+  }
+  
+  /** Records the outcome of the memoized parser {@code id} at {@code at}. */
+  final void putMemo(int id, int at, Memo memo) {
+    if (memos == null) {
+      memos = new HashMap<Long, Memo>();
+    }
+    memos.put(memoKey(id, at), memo);
+  }
+  
+  private static Long memoKey(int id, int at) {
+    return ((long) id << 32) | (at & 0xFFFFFFFFL);
+  }
+  
+  /**
+   * Starts recording the changes of the error state, for a memoized parser about to run.
+   * 
+   * @return the recording of the enclosing memoized parser, to pass to {@link #stopRecording}.
+   */
+  final ArrayList<ErrorEvent> startRecording() {
+    ArrayList<ErrorEvent> outer = recording;
+    recording = new ArrayList<ErrorEvent>();
+    return outer;
+  }
+  
+  /**
+   * Stops recording the changes of the error state, which are also part of the outer recording.
+   * 
+   * @return the changes recorded since {@link #startRecording}.
+   */
+  final List<ErrorEvent> stopRecording(ArrayList<ErrorEvent> outer) {
+    ArrayList<ErrorEvent> recorded = recording;
+    recording = outer;
+    if (outer != null) {
+      outer.addAll(recorded);
+    }
+    return recorded;
+  }
+  
+  /** Applies recorded changes of the error state again, as the memoized run made them. */
+  final void replay(List<ErrorEvent> events) {
+    for (ErrorEvent event : events) {
+      event.replay(this);
+    }
+  }
+  
+  private void record(ErrorEvent event) {
+    if (recording != null) {
+      recording.add(event);
+    }
+  }
+  
   /** Explicitly suppress or de-suppress error recording. */
   final boolean suppressError(boolean value) {
     boolean oldValue = errorSuppressed;
@@ -88,6 +180,11 @@ abstract class ParseContext {
     return oldValue;
   }
   
+  /** Whether error recording is suppressed. */
+  final boolean isErrorSuppressed() {
+    return errorSuppressed;
+  }
+  
   /** The physical index of the current most relevant error, {@code 0} if none. */
   final int errorIndex() {
     return currentErrorIndex;
@@ -146,8 +243,15 @@ abstract class ParseContext {
    * Explicitly sets the encountered token,
    * which is from a nested {@link ParseContext} instance.
    */
-  final void setEncountered(String encountered) {
+  final void setEncountered(final String encountered) {
     this.encountered = encountered;
+    if (recording != null) {
+      record(new ErrorEvent() {
+        @Override void replay(ParseContext ctxt) {
+          ctxt.setEncountered(encountered);
+        }
+      });
+    }
   }
   
   /** Returns the string representation of the current input (character or token). */
@@ -170,10 +274,21 @@ abstract class ParseContext {
   abstract int toIndex(int pos);
   
   @Private final void raise(ErrorType type, Object subject) {
+    raise(at, type, subject);
+  }
+  
+  private void raise(final int at, final ErrorType type, final Object subject) {
     if (errorSuppressed) return;
+    if (recording != null) {
+      record(new ErrorEvent() {
+        @Override void replay(ParseContext ctxt) {
+          ctxt.raise(at, type, subject);
+        }
+      });
+    }
     if (at < currentErrorAt) return;
     if (at > currentErrorAt) {
-      setErrorState(at, getIndex(), type);
+      setErrorState(at, toIndex(at), type);
       errors.add(subject);
       return;
     }
@@ -182,7 +297,7 @@ abstract class ParseContext {
       return;
     }
     if (type.ordinal() > currentErrorType.ordinal()) {
-      setErrorState(at, getIndex(), type);
+      setErrorState(at, toIndex(at), type);
       errors.add(subject);
       return;
     }
@@ -216,9 +331,17 @@ abstract class ParseContext {
   }
   
   final void setErrorState(
-      int errorAt, int errorIndex, ErrorType errorType, List<Object> errors) {
+      final int errorAt, final int errorIndex, final ErrorType errorType, List<Object> errors) {
     setErrorState(errorAt, errorIndex, errorType);
     this.errors.addAll(errors);
+    if (recording != null) {
+      final List<Object> copied = new ArrayList<Object>(errors);
+      record(new ErrorEvent() {
+        @Override void replay(ParseContext ctxt) {
+          ctxt.setErrorState(errorAt, errorIndex, errorType, copied);
+        }
+      });
+    }
   }
 
   private void setErrorState(int errorAt, int errorIndex, ErrorType errorType) {
@@ -266,6 +266,18 @@ public abstract class Parser<T> {
     return new AtomicParser<T>(this);
   }
   
+  /**
+   * A {@link Parser} that runs {@code this} at most once per input position in a parse, and
+   * replays the outcome, result and end position included, when run again at the same position.
+   * Grammars backtracking over the same alternatives then parse each of them once.
+   * 
+   * <p>The result is shared by the runs, so it should not be mutated. The errors raised by
+   * the first run are raised again by the others, so the errors reported are the same.
+   */
+  public final Parser<T> memoize() {
+    return new MemoParser<T>(this);
+  }
+  
   /**
    * A {@link Parser} that runs {@code this} parser and sets the number of logical steps explicitly
    * to {@code n}.
@@ -3,16 +3,39 @@ package commons.datetypes;
 import java.util.*;
 
 /**
- * Abstract class for all the date types available for parser 
+ * Abstract class for all the date types available for parser.
+ * The instant of the date is kept in epoch milliseconds, and its day is computed
+ * once per time zone, so that comparisons do not go through Calendar.
+ * A DateType is immutable : it keeps a copy of its date and gives copies of it,
+ * so it can be shared, in cached parse results for instance.
+ * 
+ * Days are compared in the default time zone as of the last refreshDefaultZone, which
+ * queries call once, as TimeZone.getDefault copies the zone on every call. The day of
+ * a date is cached with the zone instance it was computed in, so it is computed again
+ * once the default zone changes.
  */
 public abstract class DateType {
+	
+	/** Length of a day, in milliseconds. */
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+	
 	protected Date _date;
 	
+	/** Instant of the date, in epoch milliseconds. */
+	private long _time;
+	
+	/** Day of the date in the time zone it was last computed for, null until then. */
+	private volatile Day _day;
+	
+	/** The default time zone as of the last refresh, shared by every comparison. */
+	private static volatile TimeZone _defaultZone = TimeZone.getDefault();
+	
 	/* Constructors */	
 	public DateType() { }
 	
 	public DateType(Date date) {
-		_date = date;
+		_time = date.getTime();
+		_date = new Date(_time);
 	}
 	
 	/**
@@ -53,28 +76,135 @@ public abstract class DateType {
 	public abstract boolean isPrecise();
 	
 	/**
-	 * Get the date of this object
+	 * Get a copy of the date of this object
 	 */
 	public Date getDate() {
-		return _date;
+		return new Date(_time);
 	}
 	
 	/**
 	 * Convert this date to timestamp
 	 */
 	public long timestamp() {
-		return _date.getTime();
+		return _time;
+	}
+	
+	/**
+	 * Get the day of this date in the default time zone, counted from the epoch
+	 */
+	public int epochDay() {
+		return epochDay(_defaultZone);
+	}
+	
+	/**
+	 * Get the day of this date in a time zone, counted from the epoch.
+	 * The day is cached for the zone instance, so callers should give the same one.
+	 * 
+	 * @param zone
+	 *   The time zone of the day
+	 */
+	public int epochDay(TimeZone zone) {
+		Day day = _day;
+		if(day == null || day.zone != zone) {
+			day = new Day(zone, epochDay(_time, zone));
+			_day = day;
+		}
+		return day.day;
 	}
 	
 	/**
-	 * Convert a Date object to Calendar object
-	 *
+	 * Check if this date is on the same day with a certain date, in the default time zone
+	 * 
 	 * @param date
-	 *   The Date object to convert to Calendar
+	 *   The date to check against
+	 */
+	protected boolean isSameDay(Date date) {
+		TimeZone zone = _defaultZone;
+		return epochDay(zone) == epochDay(date.getTime(), zone);
+	}
+	
+	/**
+	 * Get the default time zone as of the last refresh, without copying it
+	 */
+	public static TimeZone defaultZone() {
+		return _defaultZone;
+	}
+	
+	/**
+	 * Read the default time zone again, once per query. The instance in use is kept
+	 * while the default zone does not change, so the cached days stay valid.
+	 * 
+	 * @return the default time zone
+	 */
+	public static TimeZone refreshDefaultZone() {
+		TimeZone zone = TimeZone.getDefault();
+		TimeZone current = _defaultZone;
+		if(zone.equals(current)) {
+			return current;
+		}
+		_defaultZone = zone;
+		return zone;
+	}
+	
+	/**
+	 * Get the day of an instant in a time zone, counted from the epoch.
+	 * Two instants have the same day if and only if they have the same
+	 * year and day of year in a Calendar of that zone.
+	 * 
+	 * @param timestamp
+	 *   The instant, in epoch milliseconds
+	 * @param zone
+	 *   The time zone of the day
+	 */
+	public static int epochDay(long timestamp, TimeZone zone) {
+		long local = timestamp + zone.getOffset(timestamp);
+		long day = local / DAY;
+		if(local % DAY < 0) {
+			day--;
+		}
+		return (int) day;
+	}
+	
+	/**
+	 * Get the first instant of a day in a time zone, without going through Calendar
+	 * 
+	 * @param day
+	 *   The day, counted from the epoch
+	 * @param zone
+	 *   The time zone of the day
+	 * @return the first instant of the day, in epoch milliseconds
+	 */
+	public static long startOfDay(int day, TimeZone zone) {
+		long midnight = day * DAY;
+		long start = midnight - zone.getOffset(midnight - zone.getOffset(midnight));
+		if(epochDay(start, zone) == day && epochDay(start - 1, zone) < day) {
+			return start;
+		}
+		
+		// The midnight falls in a change of offset, search the instant the day starts at.
+		long lo = start - DAY / 4;
+		long hi = start + DAY / 4;
+		while(lo < hi) {
+			long mid = lo + (hi - lo) / 2;
+			if(epochDay(mid, zone) < day) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+	
+	/**
+	 * Day of a date, with the time zone it was computed for
 	 */
-	protected static Calendar convertDateToCalendar(Date date) {
-		Calendar cal = Calendar.getInstance();
-		cal.setTime(date);
-		return cal;
+	private static class Day {
+		final TimeZone zone;
+		final int day;
+		
+		Day(TimeZone zone, int day) {
+			this.zone = zone;
+			this.day = day;
+		}
 	}
 }
\ No newline at end of file
@@ -1,6 +1,5 @@
 package commons.datetypes;
 
-import java.util.Calendar;
 import java.util.Date;
 import static utils.DateFormats.DATE_FORMAT;
 
@@ -15,12 +14,12 @@ public class OnTheDay extends DateType {
 
 	@Override
 	public boolean before(Date date) {
-		return (_date.before(date) && ! sameDay(date));
+		return (timestamp() < date.getTime() && ! sameDay(date));
 	}
 
 	@Override
 	public boolean after(Date date) {
-		return (_date.after(date) && ! sameDay(date));
+		return (timestamp() > date.getTime() && ! sameDay(date));
 	}
 
 	@Override
@@ -30,11 +29,7 @@ public class OnTheDay extends DateType {
 
 	@Override
 	public boolean sameDay(Date date) {
-		Calendar cal1 = convertDateToCalendar(_date);
-		Calendar cal2 = convertDateToCalendar(date);
-		
-		return (cal1.get(Calendar.YEAR) == cal2.get(Calendar.YEAR) &&
-				cal1.get(Calendar.DAY_OF_YEAR) == cal2.get(Calendar.DAY_OF_YEAR)); 
+		return isSameDay(date);
 	}
 
 	@Override
@@ -1,6 +1,5 @@
 package commons.datetypes;
 
-import java.util.Calendar;
 import java.util.Date;
 import static utils.DateFormats.DATE_AND_TIME_FORMAT;
 import static utils.DateFormats.TIME_FORMAT;
@@ -16,26 +15,22 @@ public class Precisely extends DateType {
 
 	@Override
 	public boolean before(Date date) {
-		return _date.before(date);		
+		return timestamp() < date.getTime();		
 	}
 
 	@Override
 	public boolean after(Date date) {
-		return _date.after(date);
+		return timestamp() > date.getTime();
 	}
 
 	@Override
 	public boolean sameTime(Date date) {
-		return (_date.compareTo(date) == 0);
+		return (timestamp() == date.getTime());
 	}
 
 	@Override
 	public boolean sameDay(Date date) {
-		Calendar cal1 = convertDateToCalendar(_date);
-		Calendar cal2 = convertDateToCalendar(date);
-		
-		return (cal1.get(Calendar.YEAR) == cal2.get(Calendar.YEAR) &&
-				cal1.get(Calendar.DAY_OF_YEAR) == cal2.get(Calendar.DAY_OF_YEAR)); 
+		return isSameDay(date);
 	}
 
 	@Override
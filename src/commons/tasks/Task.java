@@ -1,40 +1,76 @@
 package commons.tasks;
 
+import commons.timeframes.Between;
+import commons.timeframes.By;
+import commons.timeframes.FixPoint;
+import commons.timeframes.From;
 import commons.timeframes.TimeFrame;
 
 /**
  * Implement properties and methods for a task
+ * 
+ * A Task is an immutable value : changing it gives a new Task with the same id,
+ * so lists of Tasks can be shared without copying them.
+ * Ids are allocated by the Storage a Task is added to : a Task created without
+ * an id has NO_ID, and gets its id with withId.
+ * 
+ * The sort key of a Task is computed once, when it is created : the type of its
+ * TimeFrame, then its end and start in epoch milliseconds, then its id.
+ * TaskComparator orders Tasks by it.
  */
-public class Task implements Cloneable{
-	private int _id;                   // the task id
-	private static int _maxId = 0;     // the current maximum task id
-	private String _content;           // content of the task
-	private TimeFrame _timeFrame;      // stores information about the timeline of the task 
-	private boolean _status = false;   // whether the task is done
+public class Task {
+	public static final int NO_ID = -1; // id of a Task not given one yet
+	
+	private final int _id;             // the task id
+	private final String _content;     // content of the task
+	private final TimeFrame _timeFrame;// stores information about the timeline of the task 
+	private final boolean _status;     // whether the task is done
+	private final int _sortType;       // sort key : type of the TimeFrame,
+	private final long _sortEnd;       // then end, Long.MAX_VALUE if none,
+	private final long _sortStart;     // then start, Long.MIN_VALUE if none, then id
 	// private priority
 	
 	/* Constructors */
 	public Task(String content, TimeFrame timeFrame) {
-		this(content, timeFrame, _maxId);
+		this(content, timeFrame, NO_ID);
 	}
 	
 	public Task(String content, TimeFrame timeFrame, int id) {
-		_id = id;
-		_content = content;
-		_timeFrame = timeFrame;
-		
-		if(id >= _maxId) {
-			_maxId = id + 1;
-		}
+		this(content, timeFrame, id, false);
 	}
 	
 	public Task(String content, TimeFrame timeFrame, boolean status) {
-		this(content, timeFrame, _maxId, status);
+		this(content, timeFrame, NO_ID, status);
 	}
 	
-	private Task(String content, TimeFrame timeFrame, int id, boolean status) {
-		this(content, timeFrame, id);
+	public Task(String content, TimeFrame timeFrame, int id, boolean status) {
+		_id = id;
+		_content = content;
+		_timeFrame = timeFrame;
 		_status = status;
+		
+		_sortType = timeFrame.getType();
+		switch(_sortType) {
+		case TimeFrame.FIXPOINT:
+			_sortEnd = ((FixPoint) timeFrame).getDate().timestamp();
+			_sortStart = _sortEnd;
+			break;
+		case TimeFrame.BY:
+			_sortEnd = ((By) timeFrame).getDate().timestamp();
+			_sortStart = Long.MIN_VALUE;
+			break;
+		case TimeFrame.FROM:
+			_sortEnd = Long.MAX_VALUE;
+			_sortStart = ((From) timeFrame).getDate().timestamp();
+			break;
+		case TimeFrame.BETWEEN:
+			_sortEnd = ((Between) timeFrame).getEnd().timestamp();
+			_sortStart = ((Between) timeFrame).getStart().timestamp();
+			break;
+		default:
+			_sortEnd = Long.MAX_VALUE;
+			_sortStart = Long.MIN_VALUE;
+		}
 	}
 	
 	/* Accessors */
@@ -42,10 +78,6 @@ public class Task implements Cloneable{
 		return _id;
 	}
 	
-	public int getMaxId() {
-		return _maxId;
-	}
-	
 	public String getContent() {
 		return _content;
 	}
@@ -58,36 +90,59 @@ public class Task implements Cloneable{
 		return _status;
 	}		
 	
-	/* Mutators */
-	public void setId(int id) {
-		_id = id;
+	/**
+	 * Get the type of the TimeFrame, first part of the sort key
+	 */
+	public int getSortType() {
+		return _sortType;
 	}
 	
-	public void setMaxId(int maxId) {
-		_maxId = maxId;
+	/**
+	 * Get the end in epoch milliseconds, second part of the sort key, Long.MAX_VALUE if none
+	 */
+	public long getSortEnd() {
+		return _sortEnd;
 	}
 	
-	public void setContent(String content) {
-		_content = content;
+	/**
+	 * Get the start in epoch milliseconds, third part of the sort key, Long.MIN_VALUE if none
+	 */
+	public long getSortStart() {
+		return _sortStart;
 	}
 	
-	public void setTimeFrame(TimeFrame timeFrame) {
-		_timeFrame = timeFrame;
+	/* Copies */
+	
+	/**
+	 * Get a copy of this Task with another id
+	 */
+	public Task withId(int id) {
+		return new Task(getContent(), _timeFrame, id, _status);
 	}
 	
-	public void setStatus(boolean status) {
-		_status = status;
+	/**
+	 * Get a copy of this Task with another content
+	 */
+	public Task withContent(String content) {
+		return new Task(content, _timeFrame, _id, _status);
+	}
+	
+	/**
+	 * Get a copy of this Task with another TimeFrame
+	 */
+	public Task withTimeFrame(TimeFrame timeFrame) {
+		return new Task(getContent(), timeFrame, _id, _status);
 	}
 	
 	/**
-	 * Clone this Task object
+	 * Get a copy of this Task with another status
 	 */
-	public Task clone() {
-		return new Task(_content, _timeFrame, _id, _status);
+	public Task withStatus(boolean status) {
+		return new Task(getContent(), _timeFrame, _id, status);
 	}
 	
 	public String toString() {
 		String status = _status ? "X" : " ";
-		return "(" + _id + ") [" + status + "] " + _timeFrame.toString() + " : " + _content;
+		return "(" + _id + ") [" + status + "] " + _timeFrame.toString() + " : " + getContent();
 	}
 }
@@ -2,38 +2,33 @@ package commons.tasks;
 
 
 import java.util.*;
-import commons.timeframes.TimeFrame;
 
+/**
+ * Orders Tasks by their sort key : the type of their TimeFrame, in the order of the
+ * TimeFrame constants with Whenever last, then their end, then their start, then their id.
+ * The order is total, so sorting gives the same list whatever the order it starts from.
+ */
 public class TaskComparator implements Comparator<Task> {
 
 	public int compare(Task task1, Task task2) {
 		
-		int task1Type = task1.getTimeFrame().getType();
-		int task2Type = task2.getTimeFrame().getType();
-		
-		
-		if((task1Type == task2Type))
-			return 0;
-		
-		else if(task1Type == TimeFrame.WHENEVER){
-			return 1;
+		if(task1.getSortType() != task2.getSortType()) {
+			return task1.getSortType() < task2.getSortType() ? -1 : 1;
 		}
 		
-		else if(task1Type == TimeFrame.BETWEEN && task2Type != TimeFrame.WHENEVER){
-			return 1;
+		if(task1.getSortEnd() != task2.getSortEnd()) {
+			return task1.getSortEnd() < task2.getSortEnd() ? -1 : 1;
 		}
 		
-		else if (task1Type == TimeFrame.BY && task2Type != TimeFrame.WHENEVER && task2Type != TimeFrame.FROM){
-			return 1;
+		if(task1.getSortStart() != task2.getSortStart()) {
+			return task1.getSortStart() < task2.getSortStart() ? -1 : 1;
 		}
 		
-		else if (task1Type == TimeFrame.BETWEEN && (task2Type == TimeFrame.FIXPOINT)){
-			return 1;
+		if(task1.getId() != task2.getId()) {
+			return task1.getId() < task2.getId() ? -1 : 1;
 		}
 		
-		else{
-			return -1;
-		}
+		return 0;
 	}
 
 }
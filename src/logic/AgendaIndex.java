@@ -0,0 +1,233 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import storage.TaskIndex;
+
+import commons.datetypes.DateType;
+import commons.tasks.Task;
+import commons.timeframes.TimeFrame;
+
+/**
+ * Index of the Tasks by the day they end, behind the agenda of a day.
+ *
+ * Days are counted from the epoch in the default time zone, the days TimeFrame compares by.
+ * The index holds the sort key of each Task with its id, in a set per type of TimeFrame for
+ * the Tasks which end, and in another for the unfinished ones. The keys are ordered like
+ * TaskComparator orders the Tasks, so the queries give the ids in that order without sorting.
+ *
+ * Within a type, the sort key orders the Tasks by end, and then by start for the From ones,
+ * which have no end. A day is the range of instants from its start to the start of the next,
+ * computed once per query, so the Tasks ending on a day are a range of each set, the missed
+ * ones the first unfinished Tasks of each type ending before the day, and the ones which
+ * should be done the last unfinished Tasks of each type ending after it, once started.
+ *
+ */
+public class AgendaIndex implements TaskIndex {
+
+	/** Types of the TimeFrames which end, in order. */
+	private static final int[] ENDING = {TimeFrame.FIXPOINT, TimeFrame.BY, TimeFrame.BETWEEN};
+
+	/** Keys of the Tasks which end, by type of TimeFrame. */
+	private List<TreeSet<Key>> _ending = new ArrayList<TreeSet<Key>>();
+
+	/** Keys of the unfinished Tasks, by type of TimeFrame. */
+	private List<TreeSet<Key>> _unfinished = new ArrayList<TreeSet<Key>>();
+
+	public AgendaIndex() {
+		for(int type = 0; type <= TimeFrame.WHENEVER; type++) {
+			_ending.add(new TreeSet<Key>());
+			_unfinished.add(new TreeSet<Key>());
+		}
+	}
+
+	/** Lock of the index, taken to read by the queries and to write by the mutations. */
+	private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
+	@Override
+	public void add(Task task) {
+		_lock.writeLock().lock();
+		try {
+			Key key = new Key(task);
+
+			if(task.getSortEnd() != Long.MAX_VALUE) {
+				_ending.get(key.type).add(key);
+			}
+			if(!task.getStatus()) {
+				_unfinished.get(key.type).add(key);
+			}
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void remove(Task task) {
+		_lock.writeLock().lock();
+		try {
+			Key key = new Key(task);
+
+			_ending.get(key.type).remove(key);
+			_unfinished.get(key.type).remove(key);
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		_lock.writeLock().lock();
+		try {
+			for(int type = 0; type <= TimeFrame.WHENEVER; type++) {
+				_ending.get(type).clear();
+				_unfinished.get(type).clear();
+			}
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the ids of the Tasks ending on the same day as a date, done or not.
+	 *
+	 * @param date The date.
+	 * @return the ids of the Tasks ending that day, in order.
+	 */
+	public List<Integer> endingOn(Date date) {
+		_lock.readLock().lock();
+		try {
+			long start = startOfDay(date, 0);
+			long next = startOfDay(date, 1);
+			List<Integer> ids = new ArrayList<Integer>();
+
+			for(int type : ENDING) {
+				addIds(ids, _ending.get(type).subSet(Key.bound(type, start, Long.MIN_VALUE),
+						Key.bound(type, next, Long.MIN_VALUE)));
+			}
+			return ids;
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the ids of the unfinished Tasks which ended before the day of a date.
+	 *
+	 * @param date The date.
+	 * @return the ids of the missed Tasks, in order.
+	 */
+	public List<Integer> missed(Date date) {
+		_lock.readLock().lock();
+		try {
+			long start = startOfDay(date, 0);
+			List<Integer> ids = new ArrayList<Integer>();
+
+			// From and Whenever Tasks do not end, so are never missed.
+			for(int type : ENDING) {
+				addIds(ids, _unfinished.get(type).headSet(Key.bound(type, start, Long.MIN_VALUE)));
+			}
+			return ids;
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the ids of the unfinished Tasks which end after the day of a date,
+	 * and start before or on that day.
+	 *
+	 * @param date The date.
+	 * @return the ids of the Tasks which should be done, in order.
+	 */
+	public List<Integer> shouldDo(Date date) {
+		_lock.readLock().lock();
+		try {
+			long next = startOfDay(date, 1);
+			List<Integer> ids = new ArrayList<Integer>();
+
+			// A FixPoint starts the day it ends, so never ends after a day it has started.
+			// A By has no start, so has started on any day.
+			addIds(ids, _unfinished.get(TimeFrame.BY).tailSet(Key.bound(TimeFrame.BY, next, Long.MIN_VALUE)));
+
+			// A From has no end, so its keys are ordered by start.
+			addIds(ids, _unfinished.get(TimeFrame.FROM).headSet(Key.bound(TimeFrame.FROM, Long.MAX_VALUE, next)));
+
+			for(Key key : _unfinished.get(TimeFrame.BETWEEN).tailSet(Key.bound(TimeFrame.BETWEEN, next, Long.MIN_VALUE))) {
+				if(key.start < next) {
+					ids.add(key.id);
+				}
+			}
+
+			addIds(ids, _unfinished.get(TimeFrame.WHENEVER));
+			return ids;
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the start of a day from the day of a date, in the default time zone.
+	 *
+	 * @param date The date.
+	 * @param days The number of days from the day of the date.
+	 * @return the first instant of the day, in epoch milliseconds.
+	 */
+	private static long startOfDay(Date date, int days) {
+		TimeZone zone = DateType.defaultZone();
+		return DateType.startOfDay(DateType.epochDay(date.getTime(), zone) + days, zone);
+	}
+
+	private static void addIds(List<Integer> ids, Iterable<Key> keys) {
+		for(Key key : keys) {
+			ids.add(key.id);
+		}
+	}
+
+	/**
+	 * Sort key of a Task with its id, ordered like TaskComparator orders the Tasks.
+	 */
+	private static class Key implements Comparable<Key> {
+		final int type;
+		final long end;
+		final long start;
+		final int id;
+
+		Key(Task task) {
+			this(task.getSortType(), task.getSortEnd(), task.getSortStart(), task.getId());
+		}
+
+		Key(int type, long end, long start, int id) {
+			this.type = type;
+			this.end = end;
+			this.start = start;
+			this.id = id;
+		}
+
+		/**
+		 * Returns a key before the keys of every Task of the type with the end and start.
+		 */
+		static Key bound(int type, long end, long start) {
+			return new Key(type, end, start, Integer.MIN_VALUE);
+		}
+
+		@Override
+		public int compareTo(Key key) {
+			if(type != key.type) {
+				return type < key.type ? -1 : 1;
+			}
+			if(end != key.end) {
+				return end < key.end ? -1 : 1;
+			}
+			if(start != key.start) {
+				return start < key.start ? -1 : 1;
+			}
+			return id < key.id ? -1 : (id == key.id ? 0 : 1);
+		}
+	}
+}
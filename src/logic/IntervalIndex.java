@@ -0,0 +1,374 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import storage.TaskIndex;
+
+import commons.datetypes.DateType;
+import commons.tasks.Task;
+import commons.timeframes.Between;
+import commons.timeframes.By;
+import commons.timeframes.FixPoint;
+import commons.timeframes.From;
+import commons.timeframes.TimeFrame;
+
+/**
+ * Interval index over the TimeFrames of the Tasks, to find the ones which may superimpose
+ * a TimeFrame in O(log n + k) instead of testing every Task.
+ *
+ * Each TimeFrame is indexed as the interval of epoch milliseconds it covers, widened to whole days
+ * for the dates which are not precise, as TimeFrame compares those by day. A By has no lower bound
+ * and a From no upper bound. Two TimeFrames can only superimpose if their intervals overlap, so the
+ * candidates found must still be checked with superimpose, but they are the Tasks of the same days.
+ * Whenever covers everything : those Tasks are kept apart, and not returned as candidates.
+ * The index only holds the ids of the Tasks with their intervals, and returns ids.
+ *
+ * The intervals are kept in an AVL tree ordered by lower bound, in which each node holds
+ * the highest upper bound of its subtree, so subtrees ending before a query are skipped.
+ *
+ */
+public class IntervalIndex implements TaskIndex {
+
+	/** Root of the tree, null if empty. */
+	private Node _root = null;
+
+	/** Ids of the Tasks to be done whenever. */
+	private Postings _whenever = new Postings();
+
+	/**
+	 * Lower bound of each Task in the tree, by id, to find its node again. The bounds of the dates
+	 * which are not precise depend on the default time zone, which may change in between.
+	 */
+	private Map<Integer, Long> _bounds = new HashMap<Integer, Long>();
+
+	/** Lock of the index, taken to read by the queries and to write by the mutations. */
+	private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
+	@Override
+	public void add(Task task) {
+		_lock.writeLock().lock();
+		try {
+			TimeFrame timeFrame = task.getTimeFrame();
+
+			if(timeFrame.getType() == TimeFrame.WHENEVER) {
+				_whenever.add(task.getId());
+			} else {
+				long lo = lowerBound(timeFrame);
+				_bounds.put(task.getId(), lo);
+				_root = insert(_root, new Node(task.getId(), lo, upperBound(timeFrame)));
+			}
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void remove(Task task) {
+		_lock.writeLock().lock();
+		try {
+			Long lo = _bounds.remove(task.getId());
+
+			if(lo == null) {
+				_whenever.remove(task.getId());
+			} else {
+				_root = delete(_root, lo, task.getId());
+			}
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		_lock.writeLock().lock();
+		try {
+			_root = null;
+			_whenever.clear();
+			_bounds.clear();
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the ids of the Tasks, except those to be done whenever, whose TimeFrame may superimpose
+	 * a TimeFrame in either direction. Every Task whose TimeFrame superimposes it, or is superimposed
+	 * by it, is returned.
+	 *
+	 * @param timeFrame The TimeFrame.
+	 * @return the ids of the candidate Tasks, by increasing lower bound.
+	 */
+	public List<Integer> overlapping(TimeFrame timeFrame) {
+		_lock.readLock().lock();
+		try {
+			List<Integer> ids = new ArrayList<Integer>();
+			collect(_root, lowerBound(timeFrame), upperBound(timeFrame), ids);
+			return ids;
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the ids of the Tasks to be done whenever.
+	 *
+	 * @return the ids of the Tasks whose TimeFrame is Whenever, in order.
+	 */
+	public List<Integer> getWhenever() {
+		_lock.readLock().lock();
+		try {
+			return _whenever.toList();
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the lowest instant a TimeFrame may be compared as starting at.
+	 *
+	 * @param timeFrame The TimeFrame.
+	 * @return the lower bound of the TimeFrame, in epoch milliseconds.
+	 */
+	static long lowerBound(TimeFrame timeFrame) {
+		switch(timeFrame.getType()) {
+		case TimeFrame.FIXPOINT:
+			return lowerBound(((FixPoint) timeFrame).getDate());
+		case TimeFrame.FROM:
+			return lowerBound(((From) timeFrame).getDate());
+		case TimeFrame.BETWEEN:
+			return lowerBound(((Between) timeFrame).getStart());
+		default:
+			return Long.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * Returns the highest instant a TimeFrame may be compared as ending at.
+	 *
+	 * @param timeFrame The TimeFrame.
+	 * @return the upper bound of the TimeFrame, in epoch milliseconds.
+	 */
+	static long upperBound(TimeFrame timeFrame) {
+		switch(timeFrame.getType()) {
+		case TimeFrame.FIXPOINT:
+			return upperBound(((FixPoint) timeFrame).getDate());
+		case TimeFrame.BY:
+			return upperBound(((By) timeFrame).getDate());
+		case TimeFrame.BETWEEN:
+			return upperBound(((Between) timeFrame).getEnd());
+		default:
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Returns the instant a date starts at, the start of its day if it is not precise.
+	 *
+	 * @param date The date.
+	 * @return the lower bound of the date, in epoch milliseconds.
+	 */
+	private static long lowerBound(DateType date) {
+		if(date.isPrecise()) {
+			return date.timestamp();
+		}
+
+		TimeZone zone = DateType.defaultZone();
+		return DateType.startOfDay(date.epochDay(zone), zone);
+	}
+
+	/**
+	 * Returns the instant a date ends at, the end of its day if it is not precise.
+	 *
+	 * @param date The date.
+	 * @return the upper bound of the date, in epoch milliseconds.
+	 */
+	private static long upperBound(DateType date) {
+		if(date.isPrecise()) {
+			return date.timestamp();
+		}
+
+		TimeZone zone = DateType.defaultZone();
+		return DateType.startOfDay(date.epochDay(zone) + 1, zone) - 1;
+	}
+
+	/**
+	 * Adds the ids of a subtree whose interval overlaps [lo, hi], in order.
+	 */
+	private static void collect(Node node, long lo, long hi, List<Integer> ids) {
+		if(node == null || node.max < lo) {
+			return;
+		}
+
+		collect(node.left, lo, hi, ids);
+
+		// Every node on the right starts after this one.
+		if(node.lo <= hi) {
+			if(node.hi >= lo) {
+				ids.add(node.id);
+			}
+			collect(node.right, lo, hi, ids);
+		}
+	}
+
+	/**
+	 * Inserts a node in a subtree.
+	 *
+	 * @return the new root of the subtree.
+	 */
+	private static Node insert(Node node, Node inserted) {
+		if(node == null) {
+			return inserted;
+		}
+
+		if(compare(inserted.lo, inserted.id, node) < 0) {
+			node.left = insert(node.left, inserted);
+		} else {
+			node.right = insert(node.right, inserted);
+		}
+		return balance(node);
+	}
+
+	/**
+	 * Deletes the node of a Task from a subtree.
+	 *
+	 * @return the new root of the subtree.
+	 */
+	private static Node delete(Node node, long lo, int id) {
+		if(node == null) {
+			return null;
+		}
+
+		int cmp = compare(lo, id, node);
+		if(cmp < 0) {
+			node.left = delete(node.left, lo, id);
+		} else if(cmp > 0) {
+			node.right = delete(node.right, lo, id);
+		} else {
+			if(node.left == null) {
+				return node.right;
+			}
+			if(node.right == null) {
+				return node.left;
+			}
+
+			Node successor = node.right;
+			while(successor.left != null) {
+				successor = successor.left;
+			}
+			successor.right = deleteMin(node.right);
+			successor.left = node.left;
+			node = successor;
+		}
+		return balance(node);
+	}
+
+	/**
+	 * Deletes the first node of a subtree.
+	 *
+	 * @return the new root of the subtree.
+	 */
+	private static Node deleteMin(Node node) {
+		if(node.left == null) {
+			return node.right;
+		}
+		node.left = deleteMin(node.left);
+		return balance(node);
+	}
+
+	/**
+	 * Orders a position by lower bound, then by id.
+	 */
+	private static int compare(long lo, int id, Node node) {
+		if(lo != node.lo) {
+			return lo < node.lo ? -1 : 1;
+		}
+		return id < node.id ? -1 : (id == node.id ? 0 : 1);
+	}
+
+	/**
+	 * Restores the balance of a node whose subtrees differ in height by two at most.
+	 *
+	 * @return the new root of the subtree.
+	 */
+	private static Node balance(Node node) {
+		int factor = height(node.left) - height(node.right);
+
+		if(factor > 1) {
+			if(height(node.left.left) < height(node.left.right)) {
+				node.left = rotateLeft(node.left);
+			}
+			return rotateRight(node);
+		}
+		if(factor < -1) {
+			if(height(node.right.right) < height(node.right.left)) {
+				node.right = rotateRight(node.right);
+			}
+			return rotateLeft(node);
+		}
+
+		update(node);
+		return node;
+	}
+
+	private static Node rotateRight(Node node) {
+		Node left = node.left;
+		node.left = left.right;
+		left.right = node;
+		update(node);
+		update(left);
+		return left;
+	}
+
+	private static Node rotateLeft(Node node) {
+		Node right = node.right;
+		node.right = right.left;
+		right.left = node;
+		update(node);
+		update(right);
+		return right;
+	}
+
+	/**
+	 * Computes the height and the highest upper bound of a node from its children.
+	 */
+	private static void update(Node node) {
+		node.height = 1 + Math.max(height(node.left), height(node.right));
+		node.max = node.hi;
+		if(node.left != null && node.left.max > node.max) {
+			node.max = node.left.max;
+		}
+		if(node.right != null && node.right.max > node.max) {
+			node.max = node.right.max;
+		}
+	}
+
+	private static int height(Node node) {
+		return node == null ? 0 : node.height;
+	}
+
+	/**
+	 * Node of the tree, holding the interval of a Task and its id.
+	 */
+	private static class Node {
+		final int id;
+		final long lo;
+		final long hi;
+		long max;
+		int height = 1;
+		Node left;
+		Node right;
+
+		Node(int id, long lo, long hi) {
+			this.id = id;
+			this.lo = lo;
+			this.hi = hi;
+			this.max = hi;
+		}
+	}
+}
@@ -7,6 +7,7 @@ import java.util.*;
 
 import parser.TodoParser;
 import storage.Storage;
+import commons.datetypes.DateType;
 import commons.exceptions.*;
 import commons.tasks.Task;
 import commons.tasks.TaskComparator;
@@ -15,22 +16,69 @@ import commons.timeframes.TimeFrame;
 /**
  * Logic component.
  * 
+ * Logic can be shared between threads. Queries run concurrently on the indexes and the
+ * Storage, and the changes of a Task by id hold the stripe of its id, so that two changes
+ * of the same Task do not read it at the same time and lose one of them.
+ * 
+ * The indexes only hold the ids of the Tasks, which the queries resolve through the Storage,
+ * so the Tasks are only kept by its backend. A Task changed while a query runs may be
+ * returned as it is after the change.
+ * 
+ * The indexes of the contents are only built by the first search, as they read the content
+ * of every Task, which a mapped storage file would otherwise decode on opening. Other
+ * queries and mutations never read the contents.
+ * 
+ * The candidates of the queries are filtered and sorted by a ParallelScan, on every core
+ * once they are more than the parallel threshold.
+ * 
  */
 public class Logic {
 	private static final String TASK_NOT_FOUND = "The task is not found";
 	private static final String INVALID_RANGE = "The range is invalid";
+	private static final int STRIPES = 32;
+	
+	/** Order of the Tasks by id, of the results of the searches. */
+	private static final Comparator<Task> BY_ID = new Comparator<Task>() {
+		
+		@Override
+		public int compare(Task task1, Task task2) {
+			return task1.getId() < task2.getId() ? -1 : (task1.getId() == task2.getId() ? 0 : 1);
+		}
+	};
 	
 	private Storage storage;
 	private TodoParser parser = new TodoParser();
+	private IntervalIndex intervals = new IntervalIndex();
+	private AgendaIndex agenda = new AgendaIndex();
+	private TokenIndex tokens = new TokenIndex();
+	private TrigramIndex trigrams = new TrigramIndex();
+	private ParallelScan scan = new ParallelScan();
+	private Object[] stripes = new Object[STRIPES];
+	private volatile boolean contentsIndexed = false;
 	
 	/** 
-	 * Sole constructor.
+	 * Constructor specifying the storage file.
 	 * 
 	 * @param storageFile The storage file.
 	 * @throws StorageException if the file can not be read.
 	 */
 	public Logic(File storageFile) throws StorageException {
-		storage = new Storage(storageFile);
+		this(new Storage(storageFile));
+	}
+	
+	/**
+	 * Constructor specifying an already opened Storage, 
+	 * for instance a journaled one.
+	 * 
+	 * @param storage The storage of the Task objects.
+	 */
+	public Logic(Storage storage) {
+		this.storage = storage;
+		for(int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Object();
+		}
+		storage.addIndex(intervals);
+		storage.addIndex(agenda);
 	}
 	
 	/**
@@ -43,7 +91,7 @@ public class Logic {
 	 */
 	public Task add(String text) throws StorageException, ParserException {
 		
-		Task task = parser.getTask(text);
+		Task task = parser.getTask(text).withId(storage.allocateId());
 		storage.add(task);
 		
 		return task;
@@ -52,77 +100,129 @@ public class Logic {
 	/**
 	 * Adds a Task to the manager.
 	 * 
-	 * @param task The Task to add.
+	 * @param task The Task to add, with an id given by allocateId.
 	 * @throws StorageException if the file can not be saved.
 	 */
 	public void add(Task task) throws StorageException {
 		storage.add(task);
 	}
 	
+	/**
+	 * Allocates the id of a new Task.
+	 * 
+	 * @return an id no Task of the manager ever had.
+	 */
+	public int allocateId() {
+		return storage.allocateId();
+	}
+	
+	/**
+	 * Sets the number of candidates from which a query filters and sorts them on every core.
+	 * 
+	 * @param threshold The number of candidates, Integer.MAX_VALUE to never scan in parallel.
+	 */
+	public void setParallelThreshold(int threshold) {
+		scan.setThreshold(threshold);
+	}
+	
 	/**
 	 * Gets the list of Task objects which have time clash with the given Task specified by id.
 	 * 
 	 * @param id The id of the given Task.
-	 * @return The list of Task objects which clashes with the given task.
+	 * @return The list of Task objects which clashes with the given task, sorted by TaskComparator.
 	 * @throws TaskNotFoundException if the Task with given id is not found.
 	 */
-	public List<Task> clashWith(int id) throws TaskNotFoundException {
+	public List<Task> clashWith(final int id) throws TaskNotFoundException {
 			
-		TimeFrame tf = searchWithID(id).getTimeFrame();
-		List<Task> list = storage.getAll();
-		List<Task> clashes = new ArrayList<Task>();
+		final TimeFrame tf = searchWithID(id).getTimeFrame();
+		DateType.refreshDefaultZone();
 		
-		for(Task task : list){
-			if(task.getTimeFrame().getType() != 5 && task.getTimeFrame().superimpose(tf) && task.getId() != id){
-				clashes.add(task);
-				
+		// Only the Tasks around the same time are tested, Whenever ones are not indexed.
+		return scan.scan(storage.get(intervals.overlapping(tf)), new ParallelScan.Filter() {
+			
+			@Override
+			public boolean accept(Task task) {
+				return task.getTimeFrame().superimpose(tf) && task.getId() != id;
 			}
-		}
-		
-		return clashes;
+		}, new TaskComparator());
 	}
 	
 	/**
-	 * Searches for Task objects which contain the given information in content.
-	 * The search is case insensitive.
+	 * Searches for Task objects whose content holds the given text. The search is case insensitive.
 	 * 
 	 * @param text The String to search for in the Task contents.
-	 * @return The list of Task objects containing text in content.
+	 * @return The list of Task objects matching text.
 	 */
 	public List<Task> search(String text) {
-		text = text.toLowerCase();
 		
 		assert(!(text == ("")));
 		
-		List<Task> list = new ArrayList<Task>();
-		List<Task> allTasks = storage.getAll();
-		for(Task task : allTasks){
-			if(task.getContent().toLowerCase().contains(text)) {
-				list.add(task);
+		indexContents();
+		
+		final String lowerCase = text.toLowerCase();
+		List<Integer> ids = trigrams.candidates(text);
+		
+		// Texts shorter than a trigram are searched in every Task.
+		List<Task> candidates = ids == null ? storage.getAll() : storage.get(ids);
+		
+		return scan.scan(candidates, new ParallelScan.Filter() {
+			
+			@Override
+			public boolean accept(Task task) {
+				return task.getContent().toLowerCase().contains(lowerCase);
 			}
-		}
-				
-		return list;
+		}, ids == null ? BY_ID : null);
+	}
+	
+	/**
+	 * Searches for Task objects whose content holds most of the given text, so that a text
+	 * with a typo still finds them. The search is case insensitive.
+	 * 
+	 * @param text The String to search for in the Task contents.
+	 * @return The list of Task objects matching text, the closest first.
+	 */
+	public List<Task> searchFuzzy(String text) {
+		
+		assert(!(text == ("")));
+		
+		indexContents();
+		List<Integer> ids = trigrams.searchFuzzy(text);
+		
+		return ids == null ? search(text) : storage.get(ids);
 	}
 	
 	/**
-	 * Searches for the Task with a given id.
+	 * Searches for Task objects whose content holds every word of the given text,
+	 * each as the start of one of its words. The search is case insensitive.
+	 * 
+	 * @param text The words to search for in the Task contents.
+	 * @return The list of Task objects matching text.
+	 */
+	public List<Task> searchWords(String text) {
+		
+		assert(!(text == ("")));
+		
+		indexContents();
+		List<Integer> ids = tokens.search(text);
+		
+		return ids == null ? scan.sort(storage.getAll(), BY_ID) : storage.get(ids);
+	}
+	
+	/**
+	 * Searches for the Task with a given id, in constant time.
 	 * 
 	 * @param id The id of the Task to find.
 	 * @return The Task with the given id.
 	 * @throws TaskNotFoundException if the task with given id is not found.
 	 */
 	public Task searchWithID(int id) throws TaskNotFoundException {
-		List<Task> list = storage.getAll();
-		for(Task task : list){
-			if(task.getId() == (id)){
-				return task;
-			}
+		try {
+			return storage.get(id);
+		} catch(TaskNotFoundException e) {
+			log("Impossible to find task with id " + id + ".");
+			
+			throw new TaskNotFoundException(TASK_NOT_FOUND);
 		}
-		
-		log("Impossible to find task with id " + id + ".");
-		
-		throw new TaskNotFoundException(TASK_NOT_FOUND);
 	}	
 	
 	/**
@@ -139,9 +239,10 @@ public class Logic {
 		
 		assert(id >= 0);
 		
-		modifyTask = searchWithID(id);
-		modifyTask.setContent(activity);
-		storage.modify(modifyTask);
+		synchronized(stripe(id)) {
+			modifyTask = searchWithID(id).withContent(activity);
+			storage.modify(modifyTask);
+		}
 		return modifyTask;
 	}
 
@@ -155,9 +256,9 @@ public class Logic {
 	 * @throws StorageException if the file can not be saved.
 	 */
 	public Task modify(Task task, String activity) throws StorageException, TaskNotFoundException {
-		task.setContent(activity);
-		storage.modify(task);
-		return task;
+		Task modifyTask = task.withContent(activity);
+		storage.modify(modifyTask);
+		return modifyTask;
 	}
 		
 	/**
@@ -176,9 +277,11 @@ public class Logic {
 		assert(id >= 0);
 		assert(time != "");
 		
-		modifyTask = searchWithID(id);
-		modifyTask.setTimeFrame(parser.getTimeFrame(time));
-		storage.modify(modifyTask);
+		TimeFrame schedule = parser.getTimeFrame(time);
+		synchronized(stripe(id)) {
+			modifyTask = searchWithID(id).withTimeFrame(schedule);
+			storage.modify(modifyTask);
+		}
 		return modifyTask;
 	}
 	
@@ -192,9 +295,12 @@ public class Logic {
 	 * @throws StorageException if the file can not be saved.
 	 */
 	public Task reschedule(int id, TimeFrame schedule) throws TaskNotFoundException, StorageException {
-		Task modifyTask = searchWithID(id);
-		modifyTask.setTimeFrame(schedule);
-		storage.modify(modifyTask);
+		Task modifyTask;
+		
+		synchronized(stripe(id)) {
+			modifyTask = searchWithID(id).withTimeFrame(schedule);
+			storage.modify(modifyTask);
+		}
 		
 		return modifyTask;
 	}
@@ -212,8 +318,10 @@ public class Logic {
 		
 		assert(id >= 0);
 		
-		deleteTask = searchWithID(id);
-		storage.delete(deleteTask);
+		synchronized(stripe(id)) {
+			deleteTask = searchWithID(id);
+			storage.delete(deleteTask);
+		}
 		return deleteTask;
 	}
 	
@@ -224,20 +332,8 @@ public class Logic {
 	 * @return The list of task which are missed on the day.
 	 */
 	public List<Task> getMissedTasks(Date day) {
-		List<Task> list = new ArrayList<Task>();
-		List<Task> allTasks = storage.getAll();
-		
-		for(Task task : allTasks){
-			if(!task.getTimeFrame().endsAfter(day) && 
-					!task.getTimeFrame().endsOnTheSameDay(day) && 
-					!task.getStatus()){
-				list.add(task);
-			}
-		}
-		
-		Collections.sort(list, new TaskComparator());
-		
-		return list;
+		DateType.refreshDefaultZone();
+		return storage.get(agenda.missed(day));
 	}
 	
 	/**
@@ -247,18 +343,8 @@ public class Logic {
 	 * @return The list of Task objects which are to be done on the day.
 	 */
 	public List<Task> getMustDoTasks(Date day) {
-		List<Task> list = new ArrayList<Task>();
-		
-		List<Task> allTasks = storage.getAll();
-		for(Task task : allTasks){
-			if(task.getTimeFrame().endsOnTheSameDay(day)){
-				list.add(task);
-			}
-		}
-		
-		Collections.sort(list, new TaskComparator());
-		
-		return list;
+		DateType.refreshDefaultZone();
+		return storage.get(agenda.endingOn(day));
 	}
 	
 	/**
@@ -269,20 +355,8 @@ public class Logic {
 	 * @return The list of Task objects which are possible to do on that day.
 	 */
 	public List<Task> getShouldDoTasks(Date day) {
-		List<Task> list = new ArrayList<Task>();
-		List<Task> allTasks = storage.getAll();
-		
-		for(Task task : allTasks){
-			TimeFrame timeFrame = task.getTimeFrame();
-			if(!task.getStatus() && timeFrame.endsAfter(day) && !timeFrame.endsOnTheSameDay(day) &&
-					(timeFrame.startsBefore(day) || timeFrame.startsTheSameDay(day))){
-				list.add(task);
-			}
-		}
-		
-		Collections.sort(list, new TaskComparator());
-		
-		return list;
+		DateType.refreshDefaultZone();
+		return storage.get(agenda.shouldDo(day));
 	}
 		
 	/**
@@ -293,44 +367,41 @@ public class Logic {
 	 * @throws ParserException if text is an invalid range of id or TimeFrame.
 	 */
 	public List<Task> within(String text) throws ParserException {
-
-		List<Task> allTasks = storage.getAll();
 		
 		if(text.isEmpty()) {
-			return allTasks;
+			return storage.getAll();
 		}
 		
 		try{
 			List<Task> list = new ArrayList<Task>();
 			
-			List<Integer> idList = parser.getIds(text);
+			// Each id is looked up once, whatever the number of Tasks.
+			Set<Integer> idSet = new LinkedHashSet<Integer>(parser.getIds(text));
 			
-			for(Task task : allTasks) {
-				if(idList.contains(task.getId())) {
+			for(int id : idSet) {
+				Task task = searchOrNull(id);
+				if(task != null) {
 					list.add(task);
 				}
 			}
 			
-			Collections.sort(list, new TaskComparator());
-			
-			return list;
+			return scan.sort(list, new TaskComparator());
 			
 		}catch(Exception ex1){
 			
 			try{
-				List<Task> list = new ArrayList<Task>();
-				
-				TimeFrame withinTimeFrame = parser.getTimeFrame(text);
+				final TimeFrame withinTimeFrame = parser.getTimeFrame(text);
+				DateType.refreshDefaultZone();
+				List<Task> candidates = storage.get(intervals.overlapping(withinTimeFrame));
+				candidates.addAll(storage.get(intervals.getWhenever()));
 				
-				for(Task task : allTasks){
-					if(withinTimeFrame.superimpose(task.getTimeFrame())){
-						list.add(task);
+				return scan.scan(candidates, new ParallelScan.Filter() {
+					
+					@Override
+					public boolean accept(Task task) {
+						return withinTimeFrame.superimpose(task.getTimeFrame());
 					}
-				}
-				
-				Collections.sort(list, new TaskComparator());
-				
-				return list;
+				}, new TaskComparator());
 				
 			}catch(Exception ex2){
 				
@@ -355,9 +426,12 @@ public class Logic {
 		
 		assert(id >= 0);
 		
-		Task modifyTask = searchWithID(id);
-		modifyTask.setStatus(status);
-		storage.modify(modifyTask);
+		Task modifyTask;
+		
+		synchronized(stripe(id)) {
+			modifyTask = searchWithID(id).withStatus(status);
+			storage.modify(modifyTask);
+		}
 		return modifyTask;
 	}
 	
@@ -375,11 +449,54 @@ public class Logic {
 		
 		assert(id >= 0);
 		
-		modifyTask = searchWithID(id);
-		modifyStatus = !(modifyTask.getStatus());
-		modifyTask.setStatus(modifyStatus);
-		storage.modify(modifyTask);
+		synchronized(stripe(id)) {
+			modifyTask = searchWithID(id);
+			modifyStatus = !(modifyTask.getStatus());
+			modifyTask = modifyTask.withStatus(modifyStatus);
+			storage.modify(modifyTask);
+		}
 		return modifyTask;
 	}
+	
+	/**
+	 * Searches for the Task with a given id, which may be deleted meanwhile.
+	 * 
+	 * @param id The id of the Task to find.
+	 * @return The Task with the given id, or null if there is none.
+	 */
+	private Task searchOrNull(int id) {
+		try {
+			return storage.get(id);
+		} catch(TaskNotFoundException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Gives the lock of the changes of the Tasks whose id falls in a stripe.
+	 * 
+	 * @param id The id of the Task.
+	 * @return The lock of the stripe of id.
+	 */
+	private Object stripe(int id) {
+		return stripes[(id & Integer.MAX_VALUE) % STRIPES];
+	}
+	
+	/**
+	 * Builds the indexes of the contents on the first search. The Storage indexes every
+	 * Task while holding its lock, so no mutation is missed meanwhile.
+	 */
+	private void indexContents() {
+		if(contentsIndexed) {
+			return;
+		}
+		synchronized(this) {
+			if(!contentsIndexed) {
+				storage.addIndex(tokens);
+				storage.addIndex(trigrams);
+				contentsIndexed = true;
+			}
+		}
+	}
 
 }
\ No newline at end of file
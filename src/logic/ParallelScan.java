@@ -0,0 +1,272 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import commons.tasks.Task;
+
+/**
+ * Filters and sorts lists of Tasks, splitting the large ones into chunks scanned
+ * on every core at once.
+ *
+ * Below the threshold, a list is filtered and sorted in the calling thread. Above it, each chunk
+ * is filtered and sorted by a thread of a pool shared by every scan, and the sorted chunks are
+ * merged. Ties are taken from the earlier chunk first, so the result is the one a stable sort
+ * of the filtered list gives, whatever the number of chunks.
+ *
+ */
+public class ParallelScan {
+
+	/**
+	 * Test of the Tasks kept by a scan. It is called from several threads at once.
+	 */
+	public interface Filter {
+
+		/**
+		 * @param task A Task of the list scanned.
+		 * @return true to keep the Task.
+		 */
+		boolean accept(Task task);
+	}
+
+	/** Filter keeping every Task, to only sort a list. */
+	public static final Filter ALL = new Filter() {
+
+		@Override
+		public boolean accept(Task task) {
+			return true;
+		}
+	};
+
+	/** Default number of Tasks from which a list is scanned in parallel. */
+	public static final int DEFAULT_THRESHOLD = 100000;
+
+	/** Smallest number of Tasks scanned by a thread. */
+	private static final int MIN_CHUNK = 4096;
+
+	/** Number of chunks scanned by each thread of the pool, to even out their loads. */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+	/** Threads of the parallel scans, created on the first one. */
+	private static ExecutorService _executor = null;
+
+	/** Number of Tasks from which a list is scanned in parallel. */
+	private volatile int _threshold;
+
+	/**
+	 * Constructor of a scan parallel from DEFAULT_THRESHOLD Tasks.
+	 */
+	public ParallelScan() {
+		this(DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Constructor specifying the threshold.
+	 *
+	 * @param threshold The number of Tasks from which a list is scanned in parallel.
+	 */
+	public ParallelScan(int threshold) {
+		setThreshold(threshold);
+	}
+
+	/**
+	 * Sets the number of Tasks from which a list is scanned in parallel.
+	 *
+	 * @param threshold The number of Tasks, Integer.MAX_VALUE to always scan in the calling thread.
+	 * @throws IllegalArgumentException if the threshold is not positive.
+	 */
+	public void setThreshold(int threshold) {
+		if(threshold < 1) {
+			throw new IllegalArgumentException("Threshold " + threshold + " is not positive.");
+		}
+		_threshold = threshold;
+	}
+
+	public int getThreshold() {
+		return _threshold;
+	}
+
+	/**
+	 * Gives the Tasks of a list a filter keeps, in order.
+	 *
+	 * @param tasks The Tasks to scan, not changed during the scan.
+	 * @param filter The test of the Tasks to keep.
+	 * @param order The order of the result, or null to keep the order of the list.
+	 * @return a new list of the Tasks kept.
+	 */
+	public List<Task> scan(List<Task> tasks, Filter filter, Comparator<? super Task> order) {
+		int size = tasks.size();
+		if(size < _threshold || size < 2 * MIN_CHUNK) {
+			return scanChunk(tasks, filter, order);
+		}
+		if(!(tasks instanceof RandomAccess)) {
+			tasks = new ArrayList<Task>(tasks);
+		}
+
+		int chunks = Math.min(PARALLELISM * CHUNKS_PER_THREAD, size / MIN_CHUNK);
+		int chunkSize = (size + chunks - 1) / chunks;
+		List<Future<List<Task>>> futures = new ArrayList<Future<List<Task>>>(chunks);
+
+		for(int from = 0; from < size; from += chunkSize) {
+			final List<Task> chunk = tasks.subList(from, Math.min(size, from + chunkSize));
+			final Filter chunkFilter = filter;
+			final Comparator<? super Task> chunkOrder = order;
+
+			futures.add(executor().submit(new Callable<List<Task>>() {
+
+				@Override
+				public List<Task> call() {
+					return scanChunk(chunk, chunkFilter, chunkOrder);
+				}
+			}));
+		}
+
+		List<List<Task>> results = new ArrayList<List<Task>>(futures.size());
+		try {
+			for(Future<List<Task>> future : futures) {
+				results.add(future.get());
+			}
+		} catch(InterruptedException e) {
+			cancel(futures);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Scan interrupted.", e);
+		} catch(ExecutionException e) {
+			cancel(futures);
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if(cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+
+		return order == null ? concat(results) : merge(results, order);
+	}
+
+	/**
+	 * Gives the Tasks of a list sorted, scanning it in parallel if large.
+	 *
+	 * @param tasks The Tasks to sort.
+	 * @param order The order of the result.
+	 * @return a new sorted list of the Tasks.
+	 */
+	public List<Task> sort(List<Task> tasks, Comparator<? super Task> order) {
+		return scan(tasks, ALL, order);
+	}
+
+	private static List<Task> scanChunk(List<Task> tasks, Filter filter, Comparator<? super Task> order) {
+		List<Task> kept = new ArrayList<Task>();
+		for(Task task : tasks) {
+			if(filter.accept(task)) {
+				kept.add(task);
+			}
+		}
+
+		if(order != null) {
+			Collections.sort(kept, order);
+		}
+		return kept;
+	}
+
+	private static List<Task> concat(List<List<Task>> chunks) {
+		List<Task> tasks = new ArrayList<Task>(total(chunks));
+		for(List<Task> chunk : chunks) {
+			tasks.addAll(chunk);
+		}
+		return tasks;
+	}
+
+	/**
+	 * Merges sorted chunks, taking ties from the earlier chunk first.
+	 */
+	private static List<Task> merge(List<List<Task>> chunks, final Comparator<? super Task> order) {
+		List<Task> tasks = new ArrayList<Task>(total(chunks));
+		PriorityQueue<Cursor> heads = new PriorityQueue<Cursor>(chunks.size(), new Comparator<Cursor>() {
+
+			@Override
+			public int compare(Cursor cursor1, Cursor cursor2) {
+				int comparison = order.compare(cursor1.head(), cursor2.head());
+				return comparison != 0 ? comparison : cursor1.chunk - cursor2.chunk;
+			}
+		});
+
+		for(int i = 0; i < chunks.size(); i++) {
+			if(!chunks.get(i).isEmpty()) {
+				heads.add(new Cursor(chunks.get(i), i));
+			}
+		}
+
+		while(!heads.isEmpty()) {
+			Cursor cursor = heads.poll();
+			tasks.add(cursor.head());
+			if(++cursor.position < cursor.tasks.size()) {
+				heads.add(cursor);
+			}
+		}
+		return tasks;
+	}
+
+	private static int total(List<List<Task>> chunks) {
+		int total = 0;
+		for(List<Task> chunk : chunks) {
+			total += chunk.size();
+		}
+		return total;
+	}
+
+	private static void cancel(List<Future<List<Task>>> futures) {
+		for(Future<List<Task>> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+	private static synchronized ExecutorService executor() {
+		if(_executor == null) {
+			_executor = Executors.newFixedThreadPool(PARALLELISM, new ThreadFactory() {
+
+				private int _count = 0;
+
+				@Override
+				public synchronized Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Parallel scan " + ++_count);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return _executor;
+	}
+
+	/**
+	 * Position in a sorted chunk being merged.
+	 */
+	private static class Cursor {
+
+		final List<Task> tasks;
+		final int chunk;
+		int position = 0;
+
+		Cursor(List<Task> tasks, int chunk) {
+			this.tasks = tasks;
+			this.chunk = chunk;
+		}
+
+		Task head() {
+			return tasks.get(position);
+		}
+	}
+}
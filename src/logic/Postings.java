@@ -0,0 +1,61 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorted array of the ids of Tasks, the postings of an index. It takes 4 bytes per id,
+ * so the indexes stay small for large lists of Tasks, without holding the Tasks themselves.
+ *
+ */
+class Postings {
+	int[] ids = new int[4];
+	int size = 0;
+
+	/**
+	 * Adds an id. Ids mostly come in order, and are then appended.
+	 */
+	void add(int id) {
+		int i = Arrays.binarySearch(ids, 0, size, id);
+		if(i >= 0) {
+			return;
+		}
+		i = -i - 1;
+
+		if(size == ids.length) {
+			ids = Arrays.copyOf(ids, 2 * size);
+		}
+		System.arraycopy(ids, i, ids, i + 1, size - i);
+		ids[i] = id;
+		size++;
+	}
+
+	void remove(int id) {
+		int i = Arrays.binarySearch(ids, 0, size, id);
+		if(i >= 0) {
+			System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+			size--;
+		}
+	}
+
+	boolean contains(int id) {
+		return Arrays.binarySearch(ids, 0, size, id) >= 0;
+	}
+
+	void clear() {
+		ids = new int[4];
+		size = 0;
+	}
+
+	/**
+	 * @return the ids, in order.
+	 */
+	List<Integer> toList() {
+		List<Integer> list = new ArrayList<Integer>(size);
+		for(int i = 0; i < size; i++) {
+			list.add(ids[i]);
+		}
+		return list;
+	}
+}
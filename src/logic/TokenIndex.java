@@ -0,0 +1,157 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import storage.TaskIndex;
+
+import commons.tasks.Task;
+
+/**
+ * Inverted index from the words of the contents to the ids of the Tasks holding them.
+ *
+ * A content is split in tokens at every character which is not a letter or a digit, and
+ * tokens are lowercased. The tokens are kept sorted, so the tokens starting with a prefix
+ * are a range of them. A query matches the Tasks holding, for each of its terms, a token
+ * starting with the term, so its cost depends on the matching tokens and Tasks only.
+ *
+ * The index only holds ids, which the queries return, so the Tasks stay in the Storage
+ * whatever its backend. A Task is removed by the content it was indexed with.
+ *
+ */
+public class TokenIndex implements TaskIndex {
+
+	/** Ids of the Tasks holding each token. */
+	private TreeMap<String, Postings> _postings = new TreeMap<String, Postings>();
+
+	/** Lock of the index, taken to read by the queries and to write by the mutations. */
+	private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
+	@Override
+	public void add(Task task) {
+		_lock.writeLock().lock();
+		try {
+			for(String token : tokenize(task.getContent())) {
+				Postings postings = _postings.get(token);
+				if(postings == null) {
+					postings = new Postings();
+					_postings.put(token, postings);
+				}
+				postings.add(task.getId());
+			}
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void remove(Task task) {
+		_lock.writeLock().lock();
+		try {
+			for(String token : tokenize(task.getContent())) {
+				Postings postings = _postings.get(token);
+				if(postings != null) {
+					postings.remove(task.getId());
+					if(postings.size == 0) {
+						_postings.remove(token);
+					}
+				}
+			}
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		_lock.writeLock().lock();
+		try {
+			_postings.clear();
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the ids of the Tasks matching every term of a query, each as a prefix of one of their tokens.
+	 *
+	 * @param query The query, split in terms like the contents.
+	 * @return the ids of the matching Tasks, in order, or null if the query has no term, 
+	 *         as every Task matches it.
+	 */
+	public List<Integer> search(String query) {
+		_lock.readLock().lock();
+		try {
+			Set<String> terms = tokenize(query);
+			if(terms.isEmpty()) {
+				return null;
+			}
+
+			Set<Integer> ids = null;
+			for(String term : terms) {
+				Set<Integer> matches = new HashSet<Integer>();
+				for(Postings postings : withPrefix(term).values()) {
+					for(int i = 0; i < postings.size; i++) {
+						matches.add(postings.ids[i]);
+					}
+				}
+
+				if(ids == null) {
+					ids = matches;
+				} else {
+					ids.retainAll(matches);
+				}
+				if(ids.isEmpty()) {
+					break;
+				}
+			}
+
+			List<Integer> sorted = new ArrayList<Integer>(ids);
+			Collections.sort(sorted);
+			return sorted;
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Splits a text in lowercased tokens of letters and digits.
+	 *
+	 * @param text The text.
+	 * @return the distinct tokens of the text, in order.
+	 */
+	public static Set<String> tokenize(String text) {
+		Set<String> tokens = new LinkedHashSet<String>();
+		int start = -1;
+
+		for(int i = 0; i <= text.length(); i++) {
+			boolean inToken = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+			if(inToken && start < 0) {
+				start = i;
+			} else if(!inToken && start >= 0) {
+				tokens.add(text.substring(start, i).toLowerCase());
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Returns the postings of the tokens starting with a prefix.
+	 *
+	 * @param prefix The prefix.
+	 * @return the postings of the matching tokens, by token.
+	 */
+	private Map<String, Postings> withPrefix(String prefix) {
+		return _postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+	}
+}
@@ -0,0 +1,224 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import storage.TaskIndex;
+
+import commons.tasks.Task;
+
+/**
+ * Index of the lowercased contents by trigram, the sequences of three characters they hold.
+ *
+ * A content holding a text holds every trigram of the text, so the Tasks holding a text
+ * are among the Tasks in the postings of all its trigrams. Those candidates are found by
+ * intersecting the postings, shortest first, and then checked against the contents by the
+ * caller. Texts shorter than a trigram cannot be looked up, and are checked against every content.
+ *
+ * Postings are sorted arrays of ids, and trigrams are packed in longs, to keep the index
+ * small for large lists of Tasks. The index holds no Task, so the Tasks stay in the Storage
+ * whatever its backend; a Task is removed by the content it was indexed with.
+ *
+ */
+public class TrigramIndex implements TaskIndex {
+
+	/** Lowest share of the trigrams of a text a content must hold to match it in fuzzy searches. */
+	public static final double FUZZY_THRESHOLD = 0.5;
+
+	/** Postings of each trigram. */
+	private Map<Long, Postings> _postings = new HashMap<Long, Postings>();
+
+	/** Lock of the index, taken to read by the queries and to write by the mutations. */
+	private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
+	@Override
+	public void add(Task task) {
+		_lock.writeLock().lock();
+		try {
+			for(long trigram : trigrams(task.getContent().toLowerCase())) {
+				Postings postings = _postings.get(trigram);
+				if(postings == null) {
+					postings = new Postings();
+					_postings.put(trigram, postings);
+				}
+				postings.add(task.getId());
+			}
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void remove(Task task) {
+		_lock.writeLock().lock();
+		try {
+			for(long trigram : trigrams(task.getContent().toLowerCase())) {
+				Postings postings = _postings.get(trigram);
+				if(postings != null) {
+					postings.remove(task.getId());
+					if(postings.size == 0) {
+						_postings.remove(trigram);
+					}
+				}
+			}
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		_lock.writeLock().lock();
+		try {
+			_postings.clear();
+		} finally {
+			_lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the ids of the Tasks whose content may hold a text, ignoring case.
+	 * The contents of the candidates must still be checked.
+	 *
+	 * @param text The text to search for.
+	 * @return the ids of the candidates, in order, or null if the text is shorter than a trigram,
+	 *         as every Task is then a candidate.
+	 */
+	public List<Integer> candidates(String text) {
+		_lock.readLock().lock();
+		try {
+			long[] trigrams = trigrams(text.toLowerCase());
+			if(trigrams.length == 0) {
+				return null;
+			}
+
+			int[] ids = intersect(trigrams);
+			List<Integer> candidates = new ArrayList<Integer>(ids.length);
+			for(int id : ids) {
+				candidates.add(id);
+			}
+			return candidates;
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the ids of the Tasks whose content holds most trigrams of a text, ignoring case,
+	 * so a text with a typo still finds them. Texts shorter than a trigram must be searched as is.
+	 *
+	 * @param text The text to search for.
+	 * @return the ids of the Tasks holding at least FUZZY_THRESHOLD of the trigrams of text,
+	 *         the ones holding the most first, then by id, or null if the text is shorter than a trigram.
+	 */
+	public List<Integer> searchFuzzy(String text) {
+		_lock.readLock().lock();
+		try {
+			long[] trigrams = trigrams(text.toLowerCase());
+			if(trigrams.length == 0) {
+				return null;
+			}
+
+			// Number of trigrams of the text held by each content.
+			final Map<Integer, Integer> hits = new HashMap<Integer, Integer>();
+			for(long trigram : trigrams) {
+				Postings postings = _postings.get(trigram);
+				if(postings != null) {
+					for(int i = 0; i < postings.size; i++) {
+						Integer count = hits.get(postings.ids[i]);
+						hits.put(postings.ids[i], count == null ? 1 : count + 1);
+					}
+				}
+			}
+
+			List<Integer> ids = new ArrayList<Integer>();
+			for(Map.Entry<Integer, Integer> entry : hits.entrySet()) {
+				if(entry.getValue() >= FUZZY_THRESHOLD * trigrams.length) {
+					ids.add(entry.getKey());
+				}
+			}
+
+			Collections.sort(ids, new Comparator<Integer>() {
+
+				@Override
+				public int compare(Integer id1, Integer id2) {
+					int byHits = hits.get(id2).compareTo(hits.get(id1));
+					return byHits != 0 ? byHits : id1.compareTo(id2);
+				}
+			});
+			return ids;
+		} finally {
+			_lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the ids of the Tasks whose content holds every trigram of a list.
+	 *
+	 * @param trigrams The trigrams, at least one.
+	 * @return the ids of the Tasks, in order.
+	 */
+	private int[] intersect(long[] trigrams) {
+		Postings[] postings = new Postings[trigrams.length];
+		for(int i = 0; i < trigrams.length; i++) {
+			postings[i] = _postings.get(trigrams[i]);
+			if(postings[i] == null) {
+				return new int[0];
+			}
+		}
+
+		Arrays.sort(postings, new Comparator<Postings>() {
+
+			@Override
+			public int compare(Postings postings1, Postings postings2) {
+				return postings1.size - postings2.size;
+			}
+		});
+
+		int[] ids = Arrays.copyOf(postings[0].ids, postings[0].size);
+		int size = ids.length;
+		for(int i = 1; i < postings.length && size > 0; i++) {
+			int kept = 0;
+			for(int j = 0; j < size; j++) {
+				if(postings[i].contains(ids[j])) {
+					ids[kept++] = ids[j];
+				}
+			}
+			size = kept;
+		}
+		return Arrays.copyOf(ids, size);
+	}
+
+	/**
+	 * Returns the distinct trigrams of a text, each packed in a long.
+	 *
+	 * @param text The text.
+	 * @return the trigrams of the text, sorted.
+	 */
+	static long[] trigrams(String text) {
+		if(text.length() < 3) {
+			return new long[0];
+		}
+
+		long[] trigrams = new long[text.length() - 2];
+		for(int i = 0; i < trigrams.length; i++) {
+			trigrams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+		}
+		Arrays.sort(trigrams);
+
+		int distinct = 1;
+		for(int i = 1; i < trigrams.length; i++) {
+			if(trigrams[i] != trigrams[distinct - 1]) {
+				trigrams[distinct++] = trigrams[i];
+			}
+		}
+		return Arrays.copyOf(trigrams, distinct);
+	}
+}
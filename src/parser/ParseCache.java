@@ -0,0 +1,107 @@
+package parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of parse results, dropping the least recently used one when full.
+ *
+ * A result is kept for a text and the day it was parsed on, as relative dates like today
+ * or friday resolve against the current day. The results cached are shared by every caller,
+ * so they must be immutable, as Tasks and TimeFrames are.
+ *
+ */
+class ParseCache<T> {
+
+	/** The results, least recently used first. */
+	private final LinkedHashMap<Key, T> _results;
+
+	private long _hits = 0;
+
+	private long _misses = 0;
+
+	/**
+	 * Constructor specifying the number of results kept.
+	 *
+	 * @param capacity The number of results kept, 0 to keep none.
+	 */
+	ParseCache(final int capacity) {
+		_results = new LinkedHashMap<Key, T>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, T> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the result of a text parsed on a day, counting a hit or a miss.
+	 *
+	 * @param day The day of the parse, counted from the epoch.
+	 * @param text The text parsed, normalized.
+	 * @return the result, or null if it is not cached.
+	 */
+	synchronized T get(int day, String text) {
+		T result = _results.get(new Key(day, text));
+		if(result != null) {
+			_hits++;
+		} else {
+			_misses++;
+		}
+		return result;
+	}
+
+	/**
+	 * Caches the result of a text parsed on a day.
+	 *
+	 * @param day The day of the parse, counted from the epoch.
+	 * @param text The text parsed, normalized.
+	 * @param result The result.
+	 */
+	synchronized void put(int day, String text, T result) {
+		_results.put(new Key(day, text), result);
+	}
+
+	synchronized void clear() {
+		_results.clear();
+	}
+
+	synchronized long getHits() {
+		return _hits;
+	}
+
+	synchronized long getMisses() {
+		return _misses;
+	}
+
+	/**
+	 * Text parsed on a day.
+	 */
+	private static class Key {
+
+		private final int _day;
+		private final String _text;
+
+		Key(int day, String text) {
+			_day = day;
+			_text = text;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if(!(object instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) object;
+			return _day == key._day && _text.equals(key._text);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * _day + _text.hashCode();
+		}
+	}
+}
@@ -2,10 +2,13 @@ package parser;
 
 import java.util.List;
 
+import commons.datetypes.DateType;
 import commons.exceptions.ParserException;
 import commons.tasks.Task;
 import commons.timeframes.TimeFrame;
 
+import parser.util.Clock;
+
 import static org.codehaus.jparsec.Parsers.EOF;
 
 import static parser.parsers.Identifiers.IDS;
@@ -19,9 +22,57 @@ import static utils.logging.Logger.log;
  * TodoParser is the component in charge of parsing user input into comprehensive output,
  * like Task, TimeFrame or list of integers.
  *
+ * The Tasks and TimeFrames parsed are cached by text, for the day they were parsed on,
+ * so that the same text given again the same day is not parsed again.
+ *
+ * Relative dates, like today or friday, resolve against the Clock of the parser, read once
+ * when each text is parsed, so one parser can be used for days, or be given a fixed time.
+ *
+ * A TodoParser can be used by many threads at once : the Parsers keep no state between
+ * parses, the clock is set for the thread of each parse, and the cache is synchronized.
+ *
  */
 public class TodoParser {
 	
+	/** Default number of Tasks, and of TimeFrames, kept in the cache. */
+	public static final int DEFAULT_CACHE_CAPACITY = 1024;
+	
+	private final ParseCache<TimeFrame> _timeFrames;
+	
+	private final ParseCache<Task> _tasks;
+	
+	private final Clock _clock;
+	
+	/**
+	 * Constructor of a parser caching DEFAULT_CACHE_CAPACITY results, reading the system clock.
+	 */
+	public TodoParser() {
+		this(DEFAULT_CACHE_CAPACITY);
+	}
+	
+	/**
+	 * Constructor specifying the size of the cache, reading the system clock.
+	 * 
+	 * @param cacheCapacity The number of Tasks, and of TimeFrames, kept in the cache, 0 to cache none.
+	 */
+	public TodoParser(int cacheCapacity) {
+		this(cacheCapacity, Clock.SYSTEM);
+	}
+	
+	/**
+	 * Constructor specifying the size of the cache and the clock.
+	 * 
+	 * @param cacheCapacity The number of Tasks, and of TimeFrames, kept in the cache, 0 to cache none.
+	 * @param clock The Clock relative dates resolve against.
+	 */
+	public TodoParser(int cacheCapacity, Clock clock) {
+		assert(clock != null);
+		
+		_timeFrames = new ParseCache<TimeFrame>(cacheCapacity);
+		_tasks = new ParseCache<Task>(cacheCapacity);
+		_clock = clock;
+	}
+	
 	/**
 	 * Parses a text into a list of integers.
 	 * 
@@ -52,13 +103,26 @@ public class TodoParser {
 	public TimeFrame getTimeFrame(String text) throws ParserException {
 		assert(text != null);
 		
+		String normalized = text.trim();
+		long now = _clock.currentTimeMillis();
+		int today = today(now);
+		TimeFrame timeFrame = _timeFrames.get(today, normalized);
+		if(timeFrame != null) {
+			return timeFrame;
+		}
+		
+		Clock previous = Clock.use(Clock.fixed(now));
 		try {
-			return TIMEFRAME.followedBy(EOF).parse(text.trim());
+			timeFrame = TIMEFRAME.followedBy(EOF).parse(normalized);
+			_timeFrames.put(today, normalized, timeFrame);
+			return timeFrame;
 		} catch(Exception e) {
 			
 			log("TodoParser.getTimeFrame failed for text : " + text);
 			
 			throw new ParserException(text + " is not a valid timeframe.");
+		} finally {
+			Clock.use(previous);
 		}
 	}
 	
@@ -72,17 +136,65 @@ public class TodoParser {
 	public Task getTask(String text) throws ParserException {
 		assert(text != null);
 		
+		String normalized = text.trim();
+		long now = _clock.currentTimeMillis();
+		int today = today(now);
+		Task task = _tasks.get(today, normalized);
+		if(task != null) {
+			return task;
+		}
+		
+		Clock previous = Clock.use(Clock.fixed(now));
 		try {
-			if(text.contains("|")) {
-				return STRICT_TASK.parse(text.trim());
+			if(normalized.contains("|")) {
+				task = STRICT_TASK.parse(normalized);
 			} else {
-				return TASK.parse(text.trim());
+				task = TASK.parse(normalized);
 			}
+			_tasks.put(today, normalized, task);
+			return task;
 		} catch(Exception e) {
 			log("TodoParser.getTask failed for text : " + text);
 			
 			throw new ParserException(text + " is not a valid description of a task.");
+		} finally {
+			Clock.use(previous);
 		}
 	}
+	
+	/**
+	 * Returns the number of texts whose Task or TimeFrame was found in the cache.
+	 * 
+	 * @return the number of cache hits.
+	 */
+	public long getCacheHits() {
+		return _timeFrames.getHits() + _tasks.getHits();
+	}
+	
+	/**
+	 * Returns the number of texts whose Task or TimeFrame was not in the cache, so was parsed.
+	 * 
+	 * @return the number of cache misses.
+	 */
+	public long getCacheMisses() {
+		return _timeFrames.getMisses() + _tasks.getMisses();
+	}
+	
+	/**
+	 * Empties the cache.
+	 */
+	public void clearCache() {
+		_timeFrames.clear();
+		_tasks.clear();
+	}
+	
+	/**
+	 * Returns the day of a time, which relative dates resolve against.
+	 * 
+	 * @param now The time of the parse, read once from the clock.
+	 * @return the day, counted from the epoch in the default time zone.
+	 */
+	private static int today(long now) {
+		return DateType.epochDay(now, DateType.refreshDefaultZone());
+	}
 }
-
@@ -8,14 +8,20 @@ import org.codehaus.jparsec.functors.Map;
 import org.codehaus.jparsec.functors.Pair;
 import org.codehaus.jparsec.functors.Tuple3;
 
+import parser.util.Clock;
+import parser.util.FirstCharDispatch;
+
 import static org.codehaus.jparsec.Scanners.stringCaseInsensitive;
 
 import static org.codehaus.jparsec.Parsers.*;
 
 import static parser.parsers.Identifiers.*;
+import static parser.util.FirstCharDispatch.DIGITS;
+import static parser.util.FirstCharDispatch.initials;
 import static parser.util.Mappers.NEXT_WEEKDAY;
 import static parser.util.Mappers.THIS_WEEKDAY;
 import static parser.util.Mappers.WEEKDAY_CHECK;
+import static parser.util.Mappers.daysFromToday;
 import static parser.util.Mappers.plusDays;
 
 /**
@@ -25,13 +31,13 @@ import static parser.util.Mappers.plusDays;
 public class DateParsers {
 	
 	/** Matches today and returns a Date. */
-	public static final Parser<Date> TODAY_DATE = TODAY.retn(new Date());
+	public static final Parser<Date> TODAY_DATE = TODAY.map(daysFromToday(0));
 	
 	/** Matches tomorrow and returns a Date. */
-	public static final Parser<Date> TOMORROW_DATE = TOMORROW.retn(new Date()).map(plusDays(1));
+	public static final Parser<Date> TOMORROW_DATE = TOMORROW.map(daysFromToday(1));
 	
 	/** Matches yesterday and returns a Date. */
-	public static final Parser<Date> YESTERDAY_DATE = YESTERDAY.retn(new Date()).map(plusDays(-1));
+	public static final Parser<Date> YESTERDAY_DATE = YESTERDAY.map(daysFromToday(-1));
 	
 	/** Matches a weekday and returns a Date. */
 	public static final Parser<Date> WEEKDAY_DATE = WEEKDAY.map(NEXT_WEEKDAY);
@@ -80,7 +86,7 @@ public class DateParsers {
 
 		@Override
 		public Date map(Pair<Integer, Integer> from) {
-			Calendar calendar = Calendar.getInstance();
+			Calendar calendar = Clock.current().calendar();
 			calendar.set(Calendar.MONTH, from.b - 1);
 			calendar.set(Calendar.DAY_OF_MONTH, from.a);
 			return calendar.getTime();
@@ -101,8 +107,8 @@ public class DateParsers {
 
 		@Override
 		public Date map(Pair<Integer, Integer> from) {
-			Calendar calendar = Calendar.getInstance();
-			Calendar now = Calendar.getInstance();
+			Calendar calendar = Clock.current().calendar();
+			Calendar now = Clock.current().calendar();
 			calendar.set(Calendar.MONTH, from.b - 1);
 			calendar.set(Calendar.DAY_OF_MONTH, from.a);
 			
@@ -133,7 +139,7 @@ public class DateParsers {
 
 		@Override
 		public Date map(Tuple3<Integer, Integer, Integer> from) {
-			Calendar calendar = Calendar.getInstance();
+			Calendar calendar = Clock.current().calendar();
 			calendar.set(Calendar.YEAR, from.c);
 			calendar.set(Calendar.MONTH, from.b - 1);
 			calendar.set(Calendar.DAY_OF_MONTH, from.a);
@@ -157,20 +163,26 @@ public class DateParsers {
 			)
 		).next(WEEKDAY_CHECK);
 	
-	@SuppressWarnings("unchecked")
-	/** Matches any format of date and returns a Date. */
+	/** Characters a date can start with. */
+	public static final String DATE_INITIALS = DIGITS + initials("today", "tomorrow", "yesterday", "next", "this") + WEEKDAY_INITIALS;
+	
+	/**
+	 * Matches any format of date and returns a Date, trying only the formats starting with the next character.
+	 * Many time frames start with a date, so it is memoized : a date is parsed once per position.
+	 */
 	public static final Parser<Date> DATE = 
 		
-		longest(
-			COMPLETE_DATE, 
-			SHORT_DATE_FUTURE, 
-			TODAY_DATE, 
-			TOMORROW_DATE, 
-			YESTERDAY_DATE, 
-			WEEKDAY_SPECIFIED_DATE, 
-			NEXT_WEEKDAY_DATE, 
-			THIS_WEEKDAY_DATE, 
-			WEEKDAY_NEXT_WEEK_DATE, 
-			WEEKDAY_DATE
-		);
+		new FirstCharDispatch<Date>()
+			.add(COMPLETE_DATE, DIGITS)
+			.add(SHORT_DATE_FUTURE, DIGITS)
+			.add(TODAY_DATE, initials("today"))
+			.add(TOMORROW_DATE, initials("tomorrow"))
+			.add(YESTERDAY_DATE, initials("yesterday"))
+			.add(WEEKDAY_SPECIFIED_DATE, WEEKDAY_INITIALS)
+			.add(NEXT_WEEKDAY_DATE, initials("next"))
+			.add(THIS_WEEKDAY_DATE, initials("this"))
+			.add(WEEKDAY_NEXT_WEEK_DATE, WEEKDAY_INITIALS)
+			.add(WEEKDAY_DATE, WEEKDAY_INITIALS)
+			.longest()
+			.memoize();
 }
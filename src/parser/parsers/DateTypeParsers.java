@@ -4,21 +4,24 @@ package parser.parsers;
 import org.codehaus.jparsec.Parser;
 import static org.codehaus.jparsec.Parsers.tuple;
 import static org.codehaus.jparsec.Parsers.sequence;
-import static org.codehaus.jparsec.Parsers.longest;
 import static org.codehaus.jparsec.Scanners.stringCaseInsensitive;
 
 import static parser.parsers.DateParsers.DATE;
+import static parser.parsers.DateParsers.DATE_INITIALS;
 import static parser.parsers.DateParsers.SHORT_DATE;
 import static parser.parsers.DateParsers.WEEKDAY_DATE;
 import static parser.parsers.Identifiers.DATE_TIME_SEPARATOR;
 import static parser.parsers.Identifiers.WHITESPACE;
 import static parser.parsers.TimeParsers.TIME;
+import static parser.parsers.TimeParsers.TIME_INITIALS;
 import static parser.util.Mappers.COMBINE_DATE_TIME;
 import static parser.util.Mappers.TO_ON_THE_DAY;
 import static parser.util.Mappers.TO_PRECISELY;
 
 import commons.datetypes.DateType;
 
+import parser.util.FirstCharDispatch;
+
 /**
  * DateTypeParsers contains Parsers of DateType.
  * 
@@ -48,7 +51,10 @@ public class DateTypeParsers {
 	public static final Parser<DateType> ONLY_TIME = TIME.map(TO_PRECISELY);
 	
 	
-	/** Matches a date and time, separated by 'from' and returns a DateType. */
+	/** Characters a date or a time can start with. */
+	public static final String DATETYPE_INITIALS = DATE_INITIALS + TIME_INITIALS;
+	
+	/** Matches a date and time, separated by 'from' and returns a DateType, once per position. */
 	public static final Parser<DateType> DATE_FROM_TIME = 
 		
 		tuple(
@@ -58,7 +64,7 @@ public class DateTypeParsers {
 				WHITESPACE
 			)),
 			TIME
-		).map(COMBINE_DATE_TIME).map(TO_PRECISELY);
+		).map(COMBINE_DATE_TIME).map(TO_PRECISELY).memoize();
 	
 	/** Matches a date and time and returns a DateType. */
 	public static final Parser<DateType> DATE_AND_TIME = 
@@ -68,13 +74,13 @@ public class DateTypeParsers {
 			TIME
 		).map(COMBINE_DATE_TIME).map(TO_PRECISELY);
 	
-	@SuppressWarnings("unchecked")
-	/** Matches any date and/or time, and returns a DateType.*/
+	/** Matches any date and/or time, and returns a DateType, trying only the forms starting with the next character, once per position.*/
 	public static final Parser<DateType> DATETYPE = 
 		
-		longest(
-			DATE_AND_TIME, 
-			ONLY_DATE, 
-			ONLY_TIME
-		);
+		new FirstCharDispatch<DateType>()
+			.add(DATE_AND_TIME, DATE_INITIALS)
+			.add(ONLY_DATE, DATE_INITIALS)
+			.add(ONLY_TIME, TIME_INITIALS)
+			.longest()
+			.memoize();
 }
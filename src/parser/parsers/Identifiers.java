@@ -18,6 +18,7 @@ import java.util.List;
 import org.codehaus.jparsec.Parser;
 import org.codehaus.jparsec.functors.Unary;
 
+import static parser.util.FirstCharDispatch.initials;
 import static parser.util.Mappers.TO_LIST_PARSER;
 import static parser.util.Mappers.inRange;
 
@@ -142,6 +143,11 @@ public class Identifiers {
 	/** Matches a string for a week day and returns the number of that day. */
 	public static final Parser<Integer> WEEKDAY = longest(weekDaysParsersList());
 	
+	/** First letters of the week days, long and short. */
+	public static final String WEEKDAY_INITIALS = 
+		
+		initials(new DateFormatSymbols().getWeekdays()) + initials(new DateFormatSymbols().getShortWeekdays());
+	
 	/** Matches a string for tomorrow. */
 	public static final Parser<Void> TOMORROW = stringCaseInsensitive("tomorrow");
 	
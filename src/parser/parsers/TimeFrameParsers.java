@@ -8,13 +8,14 @@ import org.codehaus.jparsec.functors.Pair;
 
 import static org.codehaus.jparsec.Scanners.stringCaseInsensitive;
 import static org.codehaus.jparsec.Parsers.sequence;
-import static org.codehaus.jparsec.Parsers.longest;
 import static org.codehaus.jparsec.Parsers.tuple;
 import static org.codehaus.jparsec.Parsers.or;
 
+import static parser.parsers.DateParsers.DATE_INITIALS;
 import static parser.parsers.DateParsers.SHORT_DATE;
 import static parser.parsers.DateParsers.WEEKDAY_DATE;
 import static parser.parsers.DateTypeParsers.DATETYPE;
+import static parser.parsers.DateTypeParsers.DATETYPE_INITIALS;
 import static parser.parsers.DateTypeParsers.DATE_FROM_TIME;
 import static parser.parsers.DateTypeParsers.SHORT_DATE_AND_TIME;
 import static parser.parsers.DateTypeParsers.WEEKDAY_AND_TIME;
@@ -24,6 +25,7 @@ import static parser.parsers.Identifiers.PREFIX_BY;
 import static parser.parsers.Identifiers.PREFIX_FROM;
 import static parser.parsers.Identifiers.WHITESPACE;
 import static parser.parsers.TimeParsers.TIME;
+import static parser.util.FirstCharDispatch.initials;
 import static parser.util.Mappers.CHECK_ORDER;
 import static parser.util.Mappers.TO_BETWEEN;
 import static parser.util.Mappers.TO_BY;
@@ -40,6 +42,8 @@ import commons.datetypes.OnTheDay;
 import commons.timeframes.TimeFrame;
 import commons.timeframes.Whenever;
 
+import parser.util.FirstCharDispatch;
+
 /**
  * TimeFrameParsers contains various Parser objects of TimeFrame.
  * 
@@ -169,20 +173,26 @@ public class TimeFrameParsers {
 			)
 		).next(CHECK_ORDER).map(TO_BETWEEN);
 	
-	/** Matches any time frame and returns that TimeFrame. */
-	@SuppressWarnings("unchecked") public static final Parser<TimeFrame> TIMEFRAME = 
+	/** Characters of the prefixes of a by time frame. */
+	private static final String BY_INITIALS = initials("by", "before", "until", "till", "to");
+	
+	/** Characters of the prefixes of a from time frame. */
+	private static final String FROM_INITIALS = initials("from", "after");
+	
+	/** Matches any time frame and returns that TimeFrame, trying only the forms starting with the next character. */
+	public static final Parser<TimeFrame> TIMEFRAME = 
 		
-		longest(
-			BY, 
-			FROM, 
-			BETWEEN_DATE_FROM_TIME, 
-			BETWEEN_DATE_FROM_TIME_TO_TIME, 
-			BETWEEN_FUTURE_TIME, 
-			BETWEEN_FUTURE_DATE, 
-			BETWEEN_FUTURE_WEEKDAY, 
-			BETWEEN, 
-			WHENEVER, 
-			FIXPOINT
-		);
+		new FirstCharDispatch<TimeFrame>()
+			.add(BY, BY_INITIALS)
+			.add(FROM, FROM_INITIALS)
+			.add(BETWEEN_DATE_FROM_TIME, DATE_INITIALS)
+			.add(BETWEEN_DATE_FROM_TIME_TO_TIME, DATE_INITIALS)
+			.add(BETWEEN_FUTURE_TIME, FROM_INITIALS + DATETYPE_INITIALS)
+			.add(BETWEEN_FUTURE_DATE, FROM_INITIALS + DATETYPE_INITIALS)
+			.add(BETWEEN_FUTURE_WEEKDAY, FROM_INITIALS + DATETYPE_INITIALS)
+			.add(BETWEEN, FROM_INITIALS + DATETYPE_INITIALS)
+			.addAny(WHENEVER)
+			.add(FIXPOINT, initials("at") + " " + DATETYPE_INITIALS)
+			.longest();
 
 }
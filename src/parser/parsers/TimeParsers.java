@@ -8,9 +8,13 @@ import org.codehaus.jparsec.functors.Map;
 import org.codehaus.jparsec.functors.Pair;
 import org.codehaus.jparsec.functors.Tuple3;
 
+import parser.util.Clock;
+
 import static org.codehaus.jparsec.Parsers.*;
 
 import static parser.parsers.Identifiers.*;
+import static parser.util.FirstCharDispatch.DIGITS;
+import static parser.util.FirstCharDispatch.initials;
 
 /**
  * TimeParsers contains various Parser objects of Date, with relation to the time.
@@ -28,7 +32,7 @@ public class TimeParsers {
 
 		@Override
 		public Date map(Pair<Integer, Integer> from) {
-			Calendar calendar = Calendar.getInstance();
+			Calendar calendar = Clock.current().calendar();
 			
 			calendar.set(Calendar.HOUR_OF_DAY, from.a);
 			calendar.set(Calendar.MINUTE, from.b);
@@ -63,7 +67,7 @@ public class TimeParsers {
 
 		@Override
 		public Date map(Integer from) {
-			Calendar calendar = Calendar.getInstance();
+			Calendar calendar = Clock.current().calendar();
 			calendar.set(Calendar.HOUR_OF_DAY, from % 12);
 			calendar.set(Calendar.MINUTE, 0);
 			calendar.set(Calendar.SECOND, 0);
@@ -83,7 +87,7 @@ public class TimeParsers {
 
 		@Override
 		public Date map(Pair<Integer, Integer> from) {
-			Calendar calendar = Calendar.getInstance();
+			Calendar calendar = Clock.current().calendar();
 			
 			calendar.set(Calendar.HOUR_OF_DAY, from.a % 12);
 			calendar.set(Calendar.MINUTE, from.b);
@@ -105,7 +109,7 @@ public class TimeParsers {
 
 		@Override
 		public Date map(Tuple3<Integer, Integer, Integer> from) {
-			Calendar calendar = Calendar.getInstance();
+			Calendar calendar = Clock.current().calendar();
 			
 			calendar.set(Calendar.HOUR_OF_DAY, from.a % 12);
 			calendar.set(Calendar.MINUTE, from.b);
@@ -121,7 +125,7 @@ public class TimeParsers {
 
 		@Override
 		public Date map(Integer from) {
-			Calendar calendar = Calendar.getInstance();
+			Calendar calendar = Clock.current().calendar();
 			calendar.set(Calendar.HOUR_OF_DAY, 12 + (from % 12));
 			calendar.set(Calendar.MINUTE, 0);
 			calendar.set(Calendar.SECOND, 0);
@@ -141,7 +145,7 @@ public class TimeParsers {
 
 		@Override
 		public Date map(Pair<Integer, Integer> from) {
-			Calendar calendar = Calendar.getInstance();
+			Calendar calendar = Clock.current().calendar();
 			
 			calendar.set(Calendar.HOUR_OF_DAY, 12 + (from.a % 12));
 			calendar.set(Calendar.MINUTE, from.b);
@@ -163,7 +167,7 @@ public class TimeParsers {
 
 		@Override
 		public Date map(Tuple3<Integer, Integer, Integer> from) {
-			Calendar calendar = Calendar.getInstance();
+			Calendar calendar = Clock.current().calendar();
 			
 			calendar.set(Calendar.HOUR_OF_DAY, 12 + (from.a % 12));
 			calendar.set(Calendar.MINUTE, from.b);
@@ -185,7 +189,7 @@ public class TimeParsers {
 
 		@Override
 		public Date map(String from) {
-			Calendar calendar = Calendar.getInstance();
+			Calendar calendar = Clock.current().calendar();
 			
 			calendar.set(Calendar.HOUR_OF_DAY, 12);
 			calendar.set(Calendar.MINUTE, 0);
@@ -207,7 +211,7 @@ public class TimeParsers {
 
 		@Override
 		public Date map(String from) {
-			Calendar calendar = Calendar.getInstance();
+			Calendar calendar = Clock.current().calendar();
 			
 			calendar.set(Calendar.HOUR_OF_DAY, 23);
 			calendar.set(Calendar.MINUTE, 59);
@@ -218,7 +222,10 @@ public class TimeParsers {
 		
 	});
 	
-	/** Matches a time and returns a Date, set to today, with specified time. */
+	/** Characters a time can start with. */
+	public static final String TIME_INITIALS = DIGITS + initials("noon", "midday", "midnight");
+	
+	/** Matches a time and returns a Date, set to today, with specified time, once per position. */
 	public static final Parser<Date> TIME = 
 		
 		or(
@@ -231,5 +238,5 @@ public class TimeParsers {
 			COMPLETE_TIME_PM,
 			COMPLETE_TIME, 
 			SHORT_TIME
-		);
+		).memoize();
 }
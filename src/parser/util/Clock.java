@@ -0,0 +1,98 @@
+package parser.util;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Source of the current time, which relative dates like today or friday resolve against.
+ *
+ * The Parsers are shared, so they read the clock of the parse running on their thread,
+ * set with use by whoever runs the parse, and the system clock by default.
+ *
+ */
+public abstract class Clock {
+
+	/** The clock of the system. */
+	public static final Clock SYSTEM = new Clock() {
+
+		@Override
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+	};
+
+	/** The clock of the parse running on each thread. */
+	private static final ThreadLocal<Clock> CURRENT = new ThreadLocal<Clock>() {
+
+		@Override
+		protected Clock initialValue() {
+			return SYSTEM;
+		}
+	};
+
+	/**
+	 * Returns the current time.
+	 *
+	 * @return the milliseconds since the epoch.
+	 */
+	public abstract long currentTimeMillis();
+
+	/**
+	 * Returns the current time as a Date.
+	 *
+	 * @return the Date.
+	 */
+	public Date now() {
+		return new Date(currentTimeMillis());
+	}
+
+	/**
+	 * Returns a Calendar set to the current time, in the default time zone.
+	 *
+	 * @return the Calendar.
+	 */
+	public Calendar calendar() {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(currentTimeMillis());
+		return calendar;
+	}
+
+	/**
+	 * Returns a clock always giving the same time.
+	 *
+	 * @param millis The time, in milliseconds since the epoch.
+	 * @return the Clock.
+	 */
+	public static Clock fixed(final long millis) {
+		return new Clock() {
+
+			@Override
+			public long currentTimeMillis() {
+				return millis;
+			}
+		};
+	}
+
+	/**
+	 * Returns the clock the Parsers read on this thread.
+	 *
+	 * @return the Clock.
+	 */
+	public static Clock current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Sets the clock the Parsers read on this thread.
+	 *
+	 * @param clock The Clock.
+	 * @return the Clock read before, to set back once the parse is done.
+	 */
+	public static Clock use(Clock clock) {
+		assert(clock != null);
+
+		Clock previous = CURRENT.get();
+		CURRENT.set(clock);
+		return previous;
+	}
+}
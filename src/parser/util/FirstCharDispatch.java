@@ -0,0 +1,169 @@
+package parser.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jparsec.Parser;
+import org.codehaus.jparsec.Parsers;
+import org.codehaus.jparsec.pattern.CharPredicate;
+
+import static org.codehaus.jparsec.Scanners.isChar;
+
+/**
+ * Builds the longest of alternative Parsers, running only the alternatives which can start
+ * with the next character of the input.
+ *
+ * Each alternative is given the characters it can start with, compared case insensitively,
+ * or none if it can start with any character or match nothing. The characters are grouped by
+ * the alternatives which can start with them, and the next character is looked at to run the
+ * longest of its group only. The alternatives of a group keep their order, and the other ones
+ * would have failed, so the result is the one of Parsers.longest over every alternative.
+ *
+ */
+public class FirstCharDispatch<T> {
+
+	/** Characters of the decimal digits. */
+	public static final String DIGITS = "0123456789";
+
+	private final List<Parser<? extends T>> _alternatives = new ArrayList<Parser<? extends T>>();
+
+	/** Characters each alternative can start with, in lower case, null for any. */
+	private final List<String> _firstChars = new ArrayList<String>();
+
+	/**
+	 * Adds an alternative which starts with one of some characters.
+	 *
+	 * @param alternative The Parser.
+	 * @param firstChars The characters it can start with, in any case.
+	 * @return this dispatch.
+	 */
+	public FirstCharDispatch<T> add(Parser<? extends T> alternative, String firstChars) {
+		_alternatives.add(alternative);
+		_firstChars.add(toLowerCase(firstChars));
+		return this;
+	}
+
+	/**
+	 * Adds an alternative which can start with any character, or match nothing.
+	 *
+	 * @param alternative The Parser.
+	 * @return this dispatch.
+	 */
+	public FirstCharDispatch<T> addAny(Parser<? extends T> alternative) {
+		_alternatives.add(alternative);
+		_firstChars.add(null);
+		return this;
+	}
+
+	/**
+	 * Returns the Parser of the longest match of the alternatives.
+	 *
+	 * @return the Parser.
+	 */
+	public Parser<T> longest() {
+		// The characters of each group of alternatives, by their indexes.
+		Map<List<Integer>, StringBuilder> groups = new LinkedHashMap<List<Integer>, StringBuilder>();
+		for(char c : allFirstChars().toCharArray()) {
+			List<Integer> group = new ArrayList<Integer>();
+			for(int i = 0; i < _alternatives.size(); i++) {
+				String firstChars = _firstChars.get(i);
+				if(firstChars == null || firstChars.indexOf(c) >= 0) {
+					group.add(i);
+				}
+			}
+
+			if(!groups.containsKey(group)) {
+				groups.put(group, new StringBuilder());
+			}
+			groups.get(group).append(c);
+		}
+
+		List<Parser<? extends T>> branches = new ArrayList<Parser<? extends T>>();
+		for(Map.Entry<List<Integer>, StringBuilder> group : groups.entrySet()) {
+			branches.add(isChar(startsWith(group.getValue().toString())).peek().next(longest(group.getKey())));
+		}
+
+		// Any other character, or the end of the input.
+		List<Integer> any = new ArrayList<Integer>();
+		for(int i = 0; i < _alternatives.size(); i++) {
+			if(_firstChars.get(i) == null) {
+				any.add(i);
+			}
+		}
+		if(!any.isEmpty()) {
+			branches.add(longest(any));
+		}
+
+		return Parsers.or(branches);
+	}
+
+	/**
+	 * Returns the first letters of words.
+	 *
+	 * @param words The words.
+	 * @return the first letter of each word.
+	 */
+	public static String initials(String... words) {
+		StringBuilder initials = new StringBuilder();
+		for(String word : words) {
+			if(!word.isEmpty()) {
+				initials.append(word.charAt(0));
+			}
+		}
+		return initials.toString();
+	}
+
+	/**
+	 * Lowers the case of characters the way case insensitive scanners compare them.
+	 */
+	private static String toLowerCase(String chars) {
+		StringBuilder lower = new StringBuilder(chars.length());
+		for(char c : chars.toCharArray()) {
+			lower.append(Character.toLowerCase(c));
+		}
+		return lower.toString();
+	}
+
+	private String allFirstChars() {
+		StringBuilder chars = new StringBuilder();
+		for(String firstChars : _firstChars) {
+			if(firstChars == null) {
+				continue;
+			}
+			for(char c : firstChars.toCharArray()) {
+				if(chars.indexOf(String.valueOf(c)) < 0) {
+					chars.append(c);
+				}
+			}
+		}
+		return chars.toString();
+	}
+
+	private Parser<T> longest(List<Integer> indexes) {
+		List<Parser<? extends T>> alternatives = new ArrayList<Parser<? extends T>>();
+		for(int i : indexes) {
+			alternatives.add(_alternatives.get(i));
+		}
+		return Parsers.longest(alternatives);
+	}
+
+	/**
+	 * Returns the predicate of the characters which are, in lower case, one of some characters.
+	 */
+	private static CharPredicate startsWith(final String chars) {
+		return new CharPredicate() {
+
+			@Override
+			public boolean isChar(char c) {
+				return chars.indexOf(Character.toLowerCase(c)) >= 0;
+			}
+
+			@Override
+			public String toString() {
+				return "[" + chars + "]";
+			}
+		};
+	}
+}
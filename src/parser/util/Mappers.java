@@ -115,6 +115,23 @@ public class Mappers {
 		};
 	}
 	
+	/**
+	 * Maps anything to the Date a number of days after today, read from the Clock at parse time.
+	 * 
+	 * @param number The number of days to add to today.
+	 * @return A Map that gives the Date number days after today.
+	 */
+	public static Map<Object, Date> daysFromToday(final int number) {
+		return new Map<Object, Date>() {
+
+			@Override
+			public Date map(Object from) {
+				return Utils.datePlusDays(Clock.current().now(), number);
+			}
+			
+		};
+	}
+	
 	/**
 	 * A Map that takes a Date and an Integer and return the next Date that has that Integer as weekday number.
 	 */
@@ -136,7 +153,7 @@ public class Mappers {
 		@Override
 		public Date map(Integer weekDay) {
 			
-			return Utils.nextDateWithWeekDay(new Date(), weekDay);
+			return Utils.nextDateWithWeekDay(Clock.current().now(), weekDay);
 		}
 	};
 	
@@ -147,7 +164,7 @@ public class Mappers {
 
 		@Override
 		public Date map(Integer weekDay) {
-			return Utils.sameWeekWithWeekDay(new Date(), weekDay);
+			return Utils.sameWeekWithWeekDay(Clock.current().now(), weekDay);
 		}
 		
 	};
@@ -159,7 +176,7 @@ public class Mappers {
 
 		@Override
 		public Date map(Date other) {
-			Calendar now = Calendar.getInstance();
+			Calendar now = Clock.current().calendar();
 			Calendar then = Calendar.getInstance();
 			then.setTime(other);
 			
@@ -0,0 +1,321 @@
+package storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.Charset;
+import java.util.Date;
+
+import commons.datetypes.DateType;
+import commons.datetypes.OnTheDay;
+import commons.datetypes.Precisely;
+import commons.tasks.Task;
+import commons.timeframes.Between;
+import commons.timeframes.By;
+import commons.timeframes.FixPoint;
+import commons.timeframes.From;
+import commons.timeframes.TimeFrame;
+import commons.timeframes.Whenever;
+
+/**
+ * Binary representation of a list of Tasks.
+ * A file starts with a header : the magic number (int), the version of the format (short),
+ * and since version 2 the high-water mark of the ids (int), the next id to allocate.
+ * Each Task is then a record : its length (int), not counting itself, followed by
+ *   the id (int), the status (byte), the type of the TimeFrame (byte),
+ *   the start and end dates in epoch milliseconds (two longs, 0 if absent),
+ *   the precision flags of the dates (byte) and the content in UTF-8 up to the end of the record.
+ * A record cut by the end of the file is torn, and is not part of the list.
+ *
+ */
+public class BinaryFormat {
+
+	/** Magic number starting a binary file, "JDIT". */
+	public static final int MAGIC = 0x4A444954;
+
+	/** Version of the format written. */
+	public static final short VERSION = 2;
+
+	/** Version without the high-water mark of the ids, still read. */
+	public static final short VERSION_1 = 1;
+
+	/** Flag of a precise start date. */
+	private static final int PRECISE_START = 1;
+
+	/** Flag of a precise end date. */
+	private static final int PRECISE_END = 2;
+
+	/** Length of a record without its content. */
+	public static final int FIXED_LENGTH = 4 + 1 + 1 + 8 + 8 + 1;
+
+	/** Encoding of the content. */
+	public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Tells whether a file starts with the magic number of the binary format.
+	 *
+	 * @param file The file to check.
+	 * @return true if the file is binary, false if it is too short or does not start with the magic number.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public static boolean isBinary(File file) throws IOException {
+		if(file.length() < 4) {
+			return false;
+		}
+
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			return in.readInt() == MAGIC;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the header of a binary file.
+	 *
+	 * @param out The stream to write to.
+	 * @param nextId The high-water mark of the ids.
+	 * @throws IOException if the header cannot be written.
+	 */
+	public static void writeHeader(DataOutputStream out, int nextId) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeInt(nextId);
+	}
+
+	/**
+	 * Reads and checks the header of a binary file.
+	 *
+	 * @param in The stream to read from, at the start of the file.
+	 * @return the high-water mark of the ids, 0 if the version does not hold it.
+	 * @throws IOException if the header cannot be read, or is not a header of a supported version.
+	 */
+	public static int readHeader(DataInputStream in) throws IOException {
+		if(in.readInt() != MAGIC) {
+			throw new IOException("Not a binary storage file.");
+		}
+
+		short version = in.readShort();
+		checkVersion(version);
+		return version == VERSION_1 ? 0 : in.readInt();
+	}
+
+	/**
+	 * Checks that a version of the format can be read.
+	 *
+	 * @param version The version.
+	 * @throws IOException if the version is not supported.
+	 */
+	public static void checkVersion(short version) throws IOException {
+		if(version != VERSION && version != VERSION_1) {
+			throw new IOException("Unsupported binary storage version : " + version);
+		}
+	}
+
+	/**
+	 * Returns the length of the header of a version.
+	 *
+	 * @param version The version.
+	 * @return the length of the header, in bytes.
+	 */
+	public static int getHeaderLength(short version) {
+		return version == VERSION_1 ? 4 + 2 : 4 + 2 + 4;
+	}
+
+	/**
+	 * Writes the record of a Task.
+	 *
+	 * @param out The stream to write to.
+	 * @param task The Task to write.
+	 * @throws IOException if the record cannot be written.
+	 */
+	public static void writeTask(DataOutputStream out, Task task) throws IOException {
+		TimeFrame tf = task.getTimeFrame();
+		DateType start = getStart(tf);
+		DateType end = getEnd(tf);
+
+		byte[] content = task.getContent().getBytes(UTF_8);
+
+		out.writeInt(FIXED_LENGTH + content.length);
+		out.writeInt(task.getId());
+		out.writeByte(task.getStatus() ? 1 : 0);
+		out.writeByte(tf.getType());
+		out.writeLong(start != null ? start.timestamp() : 0);
+		out.writeLong(end != null ? end.timestamp() : 0);
+		out.writeByte(getFlags(start, end));
+		out.write(content);
+	}
+
+	/**
+	 * Returns the start date of a TimeFrame, as written in a record.
+	 *
+	 * @param tf The TimeFrame.
+	 * @return the start date, or null if the TimeFrame has none.
+	 */
+	static DateType getStart(TimeFrame tf) {
+		switch(tf.getType()) {
+		case TimeFrame.FIXPOINT:
+			return ((FixPoint) tf).getDate();
+		case TimeFrame.FROM:
+			return ((From) tf).getDate();
+		case TimeFrame.BETWEEN:
+			return ((Between) tf).getStart();
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the end date of a TimeFrame, as written in a record.
+	 *
+	 * @param tf The TimeFrame.
+	 * @return the end date, or null if the TimeFrame has none.
+	 */
+	static DateType getEnd(TimeFrame tf) {
+		switch(tf.getType()) {
+		case TimeFrame.BY:
+			return ((By) tf).getDate();
+		case TimeFrame.BETWEEN:
+			return ((Between) tf).getEnd();
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the precision flags of the dates of a TimeFrame.
+	 *
+	 * @param start The start date, null if absent.
+	 * @param end The end date, null if absent.
+	 * @return the precision flags.
+	 */
+	static int getFlags(DateType start, DateType end) {
+		int flags = 0;
+		if(start != null && start.isPrecise()) {
+			flags |= PRECISE_START;
+		}
+		if(end != null && end.isPrecise()) {
+			flags |= PRECISE_END;
+		}
+		return flags;
+	}
+
+	/**
+	 * Reads the next record.
+	 *
+	 * @param in The stream to read from, at the start of a record.
+	 * @param fileLength The length of the file, which no record is longer than.
+	 * @return the Task of the record, or null at the end of the file.
+	 * @throws EOFException if the record is torn.
+	 * @throws StreamCorruptedException if the length of the record is invalid, so the next ones cannot be found.
+	 * @throws IOException if the file cannot be read.
+	 * @throws IllegalArgumentException if the record is malformed.
+	 */
+	public static Task readTask(DataInputStream in, long fileLength) throws IOException {
+		int first = in.read();
+		if(first < 0) {
+			return null;
+		}
+
+		// The length is checked before allocating the record, as a corrupt one can be up to 2 GB.
+		int length = (first << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedShort());
+		if(length < FIXED_LENGTH || length > fileLength) {
+			throw new StreamCorruptedException("Invalid record length : " + length);
+		}
+
+		byte[] record = new byte[length];
+		in.readFully(record);
+
+		return decode(record, 0, length);
+	}
+
+	/**
+	 * Converts the body of a record, without its length, to a Task.
+	 *
+	 * @param record The bytes holding the record.
+	 * @param offset The offset of the body in the bytes.
+	 * @param length The length of the body.
+	 * @return the Task described by the record.
+	 * @throws IllegalArgumentException if the record is malformed.
+	 */
+	public static Task decode(byte[] record, int offset, int length) {
+		int id = readInt(record, offset);
+		boolean status = record[offset + 4] != 0;
+		int type = record[offset + 5];
+		long start = readLong(record, offset + 6);
+		long end = readLong(record, offset + 14);
+		int flags = record[offset + 22];
+
+		TimeFrame timeframe = toTimeFrame(type, start, end, flags);
+
+		String content = new String(record, offset + FIXED_LENGTH, length - FIXED_LENGTH, UTF_8);
+		return new Task(content, timeframe, id, status);
+	}
+
+	/**
+	 * Converts the dates of a record to a TimeFrame.
+	 *
+	 * @param type The type of the TimeFrame.
+	 * @param start The start date in epoch milliseconds, ignored if the type has none.
+	 * @param end The end date in epoch milliseconds, ignored if the type has none.
+	 * @param flags The precision flags of the dates.
+	 * @return the TimeFrame.
+	 * @throws IllegalArgumentException if the type is not a TimeFrame type.
+	 */
+	public static TimeFrame toTimeFrame(int type, long start, long end, int flags) {
+		switch(type) {
+		case TimeFrame.FIXPOINT:
+			return new FixPoint(toDateType(start, (flags & PRECISE_START) != 0));
+		case TimeFrame.BY:
+			return new By(toDateType(end, (flags & PRECISE_END) != 0));
+		case TimeFrame.FROM:
+			return new From(toDateType(start, (flags & PRECISE_START) != 0));
+		case TimeFrame.BETWEEN:
+			return new Between(toDateType(start, (flags & PRECISE_START) != 0),
+					toDateType(end, (flags & PRECISE_END) != 0));
+		case TimeFrame.WHENEVER:
+			return new Whenever();
+		default:
+			throw new IllegalArgumentException("Malformed record of TimeFrame type " + type);
+		}
+	}
+
+	/**
+	 * Converts epoch milliseconds to a DateType.
+	 *
+	 * @param timestamp The date in epoch milliseconds.
+	 * @param precise true for a precise date, false for a day.
+	 * @return the DateType.
+	 */
+	private static DateType toDateType(long timestamp, boolean precise) {
+		return precise ? new Precisely(new Date(timestamp)) : new OnTheDay(new Date(timestamp));
+	}
+
+	/**
+	 * Reads a big-endian int.
+	 *
+	 * @param bytes The bytes to read from.
+	 * @param offset The offset of the int.
+	 * @return the int.
+	 */
+	private static int readInt(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) |
+			((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+	}
+
+	/**
+	 * Reads a big-endian long.
+	 *
+	 * @param bytes The bytes to read from.
+	 * @param offset The offset of the long.
+	 * @return the long.
+	 */
+	private static long readLong(byte[] bytes, int offset) {
+		return ((long) readInt(bytes, offset) << 32) | (readInt(bytes, offset + 4) & 0xFFFFFFFFL);
+	}
+}
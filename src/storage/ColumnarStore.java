@@ -0,0 +1,285 @@
+package storage;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+import commons.datetypes.DateType;
+import commons.tasks.Task;
+import commons.timeframes.TimeFrame;
+
+/**
+ * TaskStore keeping the fields of the Tasks in parallel primitive arrays, one entry per slot,
+ * as a binary record holds them : id, status, type of the TimeFrame, start and end dates in
+ * epoch milliseconds and their precision flags. The contents are appended to a shared array
+ * of chars, and each slot holds the offset and length of its own.
+ *
+ * A Task is built from its slot each time it is read, so the store holds no object per Task.
+ * The contents of the replaced and freed slots stay in the array until it is packed.
+ * The array is never written below its length, and packing copies it, so a snapshot keeps
+ * reading the array it was taken on without copying the contents.
+ *
+ */
+class ColumnarStore implements TaskStore {
+
+	/** Type of a free slot, which is not a TimeFrame type. */
+	private static final byte FREE = 0;
+
+	/** Initial number of slots of the arrays. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Number of slots. */
+	private int _size = 0;
+
+	private int[] _ids;
+	private byte[] _statuses;
+	private byte[] _types;
+	private long[] _starts;
+	private long[] _ends;
+	private byte[] _flags;
+	private int[] _offsets;
+	private int[] _lengths;
+
+	/** The contents of the slots, one after the other. */
+	private char[] _contents;
+
+	/** Number of chars used in the contents. */
+	private int _contentsLength = 0;
+
+	/** Number of chars of the contents no slot refers to. */
+	private int _deadChars = 0;
+
+	ColumnarStore() {
+		allocate(INITIAL_CAPACITY);
+		_contents = new char[INITIAL_CAPACITY * 16];
+	}
+
+	@Override
+	public int size() {
+		return _size;
+	}
+
+	@Override
+	public Task get(int slot) {
+		checkSlot(slot);
+		if(_types[slot] == FREE) {
+			return null;
+		}
+
+		TimeFrame timeFrame = BinaryFormat.toTimeFrame(_types[slot], _starts[slot], _ends[slot], _flags[slot]);
+		String content = new String(_contents, _offsets[slot], _lengths[slot]);
+		return new Task(content, timeFrame, _ids[slot], _statuses[slot] != 0);
+	}
+
+	@Override
+	public int getId(int slot) {
+		checkSlot(slot);
+		return _ids[slot];
+	}
+
+	@Override
+	public Task set(int slot, Task task) {
+		Task previous = get(slot);
+		if(previous != null) {
+			_deadChars += _lengths[slot];
+		}
+
+		if(task == null) {
+			_types[slot] = FREE;
+			_lengths[slot] = 0;
+		} else {
+			write(slot, task);
+		}
+		return previous;
+	}
+
+	@Override
+	public void add(Task task) {
+		if(_size == _ids.length) {
+			allocate(2 * _size);
+		}
+		write(_size++, task);
+	}
+
+	@Override
+	public void pack() {
+		int kept = 0;
+		for(int slot = 0; slot < _size; slot++) {
+			if(_types[slot] != FREE) {
+				move(slot, kept++);
+			}
+		}
+		_size = kept;
+
+		if(_deadChars > 0 && 2 * _deadChars >= _contentsLength) {
+			packContents();
+		}
+	}
+
+	@Override
+	public void clear() {
+		_size = 0;
+		allocate(INITIAL_CAPACITY);
+		_contents = new char[INITIAL_CAPACITY * 16];
+		_contentsLength = 0;
+		_deadChars = 0;
+	}
+
+	@Override
+	public List<Task> snapshot() {
+		ColumnarStore copy = new ColumnarStore(this);
+		return Collections.unmodifiableList(new Rows(copy));
+	}
+
+	/**
+	 * Copies the slots of a store which are not free, sharing its contents.
+	 *
+	 * @param store The store to copy.
+	 */
+	private ColumnarStore(ColumnarStore store) {
+		int live = 0;
+		for(int slot = 0; slot < store._size; slot++) {
+			if(store._types[slot] != FREE) {
+				live++;
+			}
+		}
+		allocate(live);
+
+		for(int slot = 0; slot < store._size; slot++) {
+			if(store._types[slot] != FREE) {
+				_ids[_size] = store._ids[slot];
+				_statuses[_size] = store._statuses[slot];
+				_types[_size] = store._types[slot];
+				_starts[_size] = store._starts[slot];
+				_ends[_size] = store._ends[slot];
+				_flags[_size] = store._flags[slot];
+				_offsets[_size] = store._offsets[slot];
+				_lengths[_size] = store._lengths[slot];
+				_size++;
+			}
+		}
+
+		_contents = store._contents;
+		_contentsLength = store._contentsLength;
+	}
+
+	/**
+	 * Writes the fields of a Task in a slot, appending its content.
+	 */
+	private void write(int slot, Task task) {
+		TimeFrame timeFrame = task.getTimeFrame();
+		DateType start = BinaryFormat.getStart(timeFrame);
+		DateType end = BinaryFormat.getEnd(timeFrame);
+		String content = task.getContent();
+
+		_ids[slot] = task.getId();
+		_statuses[slot] = (byte) (task.getStatus() ? 1 : 0);
+		_types[slot] = (byte) timeFrame.getType();
+		_starts[slot] = start != null ? start.timestamp() : 0;
+		_ends[slot] = end != null ? end.timestamp() : 0;
+		_flags[slot] = (byte) BinaryFormat.getFlags(start, end);
+		_offsets[slot] = append(content);
+		_lengths[slot] = content.length();
+	}
+
+	/**
+	 * Appends a content, growing the array into a new one if needed.
+	 *
+	 * @return the offset of the content.
+	 */
+	private int append(String content) {
+		int length = content.length();
+		if(_contentsLength + length > _contents.length) {
+			_contents = Arrays.copyOf(_contents, Math.max(2 * _contents.length, _contentsLength + length));
+		}
+
+		content.getChars(0, length, _contents, _contentsLength);
+		int offset = _contentsLength;
+		_contentsLength += length;
+		return offset;
+	}
+
+	/**
+	 * Copies the contents of the slots into a new array, dropping the dead ones.
+	 */
+	private void packContents() {
+		char[] contents = new char[Math.max(INITIAL_CAPACITY, _contentsLength - _deadChars)];
+		int length = 0;
+
+		for(int slot = 0; slot < _size; slot++) {
+			System.arraycopy(_contents, _offsets[slot], contents, length, _lengths[slot]);
+			_offsets[slot] = length;
+			length += _lengths[slot];
+		}
+
+		_contents = contents;
+		_contentsLength = length;
+		_deadChars = 0;
+	}
+
+	private void move(int from, int to) {
+		_ids[to] = _ids[from];
+		_statuses[to] = _statuses[from];
+		_types[to] = _types[from];
+		_starts[to] = _starts[from];
+		_ends[to] = _ends[from];
+		_flags[to] = _flags[from];
+		_offsets[to] = _offsets[from];
+		_lengths[to] = _lengths[from];
+	}
+
+	/**
+	 * Resizes the arrays of the slots, keeping the first ones.
+	 */
+	private void allocate(int capacity) {
+		if(_ids == null) {
+			_ids = new int[capacity];
+			_statuses = new byte[capacity];
+			_types = new byte[capacity];
+			_starts = new long[capacity];
+			_ends = new long[capacity];
+			_flags = new byte[capacity];
+			_offsets = new int[capacity];
+			_lengths = new int[capacity];
+		} else {
+			_ids = Arrays.copyOf(_ids, capacity);
+			_statuses = Arrays.copyOf(_statuses, capacity);
+			_types = Arrays.copyOf(_types, capacity);
+			_starts = Arrays.copyOf(_starts, capacity);
+			_ends = Arrays.copyOf(_ends, capacity);
+			_flags = Arrays.copyOf(_flags, capacity);
+			_offsets = Arrays.copyOf(_offsets, capacity);
+			_lengths = Arrays.copyOf(_lengths, capacity);
+		}
+	}
+
+	private void checkSlot(int slot) {
+		if(slot < 0 || slot >= _size) {
+			throw new IndexOutOfBoundsException("Slot " + slot + " of " + _size);
+		}
+	}
+
+	/**
+	 * List of the Tasks of a store, built when read.
+	 */
+	private static class Rows extends AbstractList<Task> implements RandomAccess {
+
+		private final ColumnarStore _store;
+
+		Rows(ColumnarStore store) {
+			_store = store;
+		}
+
+		@Override
+		public Task get(int index) {
+			return _store.get(index);
+		}
+
+		@Override
+		public int size() {
+			return _store.size();
+		}
+	}
+}
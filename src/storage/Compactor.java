@@ -0,0 +1,70 @@
+package storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import commons.tasks.Task;
+import static utils.logging.Logger.log;
+
+/**
+ * Background job merging a journal segment into the storage file.
+ *
+ * The live Tasks, as they were when the segment was closed, are written to a temporary
+ * snapshot file which is then renamed over the storage file. Only then the segment is deleted,
+ * so an interrupted compaction leaves the storage file and the segment as they were,
+ * and replaying the segment again on opening is harmless.
+ *
+ */
+public class Compactor implements Runnable {
+
+	/** The storage file to replace. */
+	private final File _storageFile;
+
+	/** The closed journal segment, merged in the snapshot. */
+	private final File _segment;
+
+	/** The live Tasks to write. */
+	private final List<Task> _snapshot;
+
+	/** The high-water mark of the ids. */
+	private final int _nextId;
+
+	/** The format of the snapshot. */
+	private final StorageFormat _format;
+
+	/** Whether the snapshot is forced to the disk before replacing the storage file. */
+	private final boolean _sync;
+
+	/**
+	 * Sole constructor.
+	 *
+	 * @param storageFile The storage file to replace.
+	 * @param segment The closed journal segment, deleted once the snapshot is in place.
+	 * @param snapshot The live Tasks, an unmodifiable snapshot.
+	 * @param nextId The high-water mark of the ids.
+	 * @param format The format of the snapshot.
+	 * @param sync true to force the snapshot to the disk before replacing the storage file.
+	 */
+	public Compactor(File storageFile, File segment, List<Task> snapshot, int nextId, StorageFormat format, boolean sync) {
+		_storageFile = storageFile;
+		_segment = segment;
+		_snapshot = snapshot;
+		_nextId = nextId;
+		_format = format;
+		_sync = sync;
+	}
+
+	@Override
+	public void run() {
+		try {
+			SnapshotWriter.write(_storageFile, _snapshot, _nextId, _format, _sync);
+
+			if(!_segment.delete()) {
+				log("Impossible to delete journal segment " + _segment.getAbsolutePath() + ".");
+			}
+		} catch(IOException e) {
+			log("Compaction of " + _storageFile.getAbsolutePath() + " failed : " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package storage;
+
+/**
+ * Durability levels of the writes made by a Storage.
+ * 
+ */
+public enum Durability {
+	
+	/** Writes are never forced to the disk. A system crash may lose the last changes. */
+	NONE,
+	
+	/** Writes are forced to the disk at regular intervals. A system crash may lose the changes of the last interval. */
+	PERIODIC,
+	
+	/** Every write is forced to the disk before returning. */
+	ALWAYS
+}
@@ -0,0 +1,208 @@
+package storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static utils.logging.Logger.log;
+
+/**
+ * Writer thread committing the writes of many callers in groups.
+ * 
+ * Callers queue their records and get a WriteFuture back. The writer thread takes every
+ * record queued so far as one batch, hands it to its Sink in a single call, which writes 
+ * and syncs it once, and then completes the future of each record of the batch.
+ * The more callers write at the same time, the larger the batches.
+ * 
+ * Closing queues a last marker under the same lock as the records, so no record is queued
+ * after it : the writer thread writes every record before the marker, and then stops.
+ * 
+ */
+public class GroupCommitWriter implements Runnable {
+	
+	/**
+	 * Where the batches are written.
+	 */
+	public interface Sink {
+		
+		/**
+		 * Writes a batch of records and forces it to the disk.
+		 * 
+		 * @param records The records of the batch, in order, possibly empty.
+		 * @throws IOException if the batch cannot be written.
+		 */
+		void write(List<String> records) throws IOException;
+	}
+	
+	/** Maximal number of records in a batch. */
+	public static final int MAX_BATCH = 4096;
+	
+	/** Where the batches are written. */
+	private final Sink _sink;
+	
+	/** The writes waiting for the writer thread. */
+	private final BlockingQueue<WriteFuture> _queue = new LinkedBlockingQueue<WriteFuture>();
+	
+	/** The writer thread. */
+	private final Thread _thread;
+	
+	/** Whether the writer has been closed. Set and read with the lock of the queue. */
+	private boolean _closed = false;
+	
+	/** Lock of the queue, making the queueing of a record and the closing atomic. */
+	private final Object _lock = new Object();
+	
+	/** Last entry of the queue, queued on closing. */
+	private final WriteFuture _end = new WriteFuture(null);
+	
+	/**
+	 * Constructor specifying the Sink, starting the writer thread.
+	 * 
+	 * @param sink Where the batches are written.
+	 */
+	public GroupCommitWriter(Sink sink) {
+		_sink = sink;
+		_thread = new Thread(this, "Storage group commit");
+		_thread.setDaemon(true);
+		_thread.start();
+	}
+	
+	/**
+	 * Queues a record.
+	 * 
+	 * @param record The record to write, null to write nothing but still be part of a batch.
+	 * @return the future completed once the batch holding the record is written.
+	 */
+	public WriteFuture submit(String record) {
+		WriteFuture future = new WriteFuture(record);
+		if(!enqueue(future)) {
+			future.fail(new IOException("Writer closed."));
+		}
+		return future;
+	}
+	
+	/**
+	 * Waits until every record queued so far is written.
+	 * 
+	 * @throws IOException if the last batch could not be written.
+	 */
+	public void flush() throws IOException {
+		// Batches are written in order, so the previous records are written with this one or before.
+		WriteFuture future = new WriteFuture(null);
+		if(!enqueue(future)) {
+			// Every record queued before the closing is written before the thread stops.
+			awaitThread();
+			return;
+		}
+		try {
+			future.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while flushing.");
+		} catch(ExecutionException e) {
+			throw new IOException(e.getCause().getMessage());
+		}
+	}
+	
+	/**
+	 * Writes the records queued so far and stops the writer thread.
+	 * 
+	 * @throws IOException if the last batch could not be written.
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			synchronized(_lock) {
+				if(!_closed) {
+					_closed = true;
+					_queue.add(_end);
+				}
+			}
+			awaitThread();
+		}
+	}
+	
+	/**
+	 * Queues an entry unless the writer is closed.
+	 * 
+	 * @return false if the writer is closed.
+	 */
+	private boolean enqueue(WriteFuture future) {
+		synchronized(_lock) {
+			if(_closed) {
+				return false;
+			}
+			_queue.add(future);
+			return true;
+		}
+	}
+	
+	/**
+	 * Waits until the writer thread stops, once closed.
+	 * 
+	 * @throws IOException if interrupted meanwhile.
+	 */
+	private void awaitThread() throws IOException {
+		if(Thread.currentThread() == _thread) {
+			return;
+		}
+		try {
+			_thread.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while closing.");
+		}
+	}
+
+	@Override
+	public void run() {
+		List<WriteFuture> batch = new ArrayList<WriteFuture>();
+		List<String> records = new ArrayList<String>();
+		boolean closing = false;
+		
+		while(!closing) {
+			try {
+				batch.add(_queue.take());
+			} catch(InterruptedException e) {
+				continue;
+			}
+			_queue.drainTo(batch, MAX_BATCH - 1);
+			
+			// Nothing is queued after the end, so it is the last of its batch.
+			if(batch.get(batch.size() - 1) == _end) {
+				batch.remove(batch.size() - 1);
+				closing = true;
+			}
+			
+			for(WriteFuture future : batch) {
+				if(future.getRecord() != null) {
+					records.add(future.getRecord());
+				}
+			}
+			
+			try {
+				_sink.write(records);
+				for(WriteFuture future : batch) {
+					future.complete();
+				}
+			} catch(IOException e) {
+				log("Impossible to write a batch of " + records.size() + " records : " + e.getMessage());
+				for(WriteFuture future : batch) {
+					future.fail(e);
+				}
+			} catch(RuntimeException e) {
+				log("Impossible to write a batch of " + records.size() + " records : " + e);
+				for(WriteFuture future : batch) {
+					future.fail(e);
+				}
+			}
+			
+			batch.clear();
+			records.clear();
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package storage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Allocates the ids of Tasks, and keeps the high-water mark of the ids ever used.
+ * The mark is written with the snapshots of a Storage, so the id of a deleted Task
+ * is never given again, even across sessions.
+ *
+ * Ids are allocated without locking, so several threads can allocate at once and
+ * never get the same id. With a block size above 1, each thread leases a block of
+ * ids at a time and allocates from it without touching the shared counter ; the
+ * ids left in the blocks when a session ends are never given.
+ *
+ */
+public class IdAllocator {
+
+	/** The next id to allocate, above every id ever used or leased. */
+	private final AtomicInteger _next;
+
+	/** Number of ids leased by a thread at a time. */
+	private volatile int _blockSize = 1;
+
+	/** The block of ids leased by each thread. */
+	private final ThreadLocal<Lease> _leases = new ThreadLocal<Lease>() {
+
+		@Override
+		protected Lease initialValue() {
+			return new Lease();
+		}
+	};
+
+	/**
+	 * Constructor of an allocator starting from 0.
+	 */
+	public IdAllocator() {
+		this(0);
+	}
+
+	/**
+	 * Constructor specifying the next id to allocate.
+	 *
+	 * @param next The next id to allocate, a persisted high-water mark.
+	 */
+	public IdAllocator(int next) {
+		_next = new AtomicInteger(next);
+	}
+
+	/**
+	 * Allocates a new id.
+	 *
+	 * @return an id never used before.
+	 */
+	public int allocate() {
+		int blockSize = _blockSize;
+		if(blockSize == 1) {
+			return _next.getAndIncrement();
+		}
+
+		Lease lease = _leases.get();
+		if(lease.next == lease.end) {
+			lease.next = _next.getAndAdd(blockSize);
+			lease.end = lease.next + blockSize;
+		}
+		return lease.next++;
+	}
+
+	/**
+	 * Sets the number of ids a thread leases at a time.
+	 * The blocks already leased are used up first.
+	 *
+	 * @param blockSize The number of ids, 1 to allocate each id from the shared counter.
+	 * @throws IllegalArgumentException if the size is not positive.
+	 */
+	public void setBlockSize(int blockSize) {
+		if(blockSize < 1) {
+			throw new IllegalArgumentException("Block size " + blockSize + " is not positive.");
+		}
+		_blockSize = blockSize;
+	}
+
+	/**
+	 * Records that an id is used, so it is never allocated.
+	 *
+	 * @param id The id used.
+	 */
+	public void observe(int id) {
+		advanceTo(id + 1);
+	}
+
+	/**
+	 * Raises the high-water mark, if lower, to a persisted one.
+	 *
+	 * @param next The next id to allocate, at least.
+	 */
+	public void advanceTo(int next) {
+		int current = _next.get();
+		while(next > current && !_next.compareAndSet(current, next)) {
+			current = _next.get();
+		}
+	}
+
+	/**
+	 * Returns the high-water mark.
+	 *
+	 * @return the next id to allocate, above every id ever used.
+	 */
+	public int getNext() {
+		return _next.get();
+	}
+
+	/**
+	 * Block of ids leased by a thread, from next included to end excluded.
+	 */
+	private static class Lease {
+
+		int next = 0;
+		int end = 0;
+	}
+}
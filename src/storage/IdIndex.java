@@ -0,0 +1,175 @@
+package storage;
+
+import java.util.Arrays;
+
+/**
+ * Map from int keys to non-negative int values, without boxing.
+ * Entries are kept in open addressing tables with linear probing, and removals shift
+ * the following entries back, so lookups never go through deleted entries.
+ *
+ */
+public class IdIndex {
+
+	/** Value returned for a missing key. */
+	public static final int MISSING = -1;
+
+	/** Key of an empty entry, which cannot be stored. */
+	private static final int EMPTY = Integer.MIN_VALUE;
+
+	/** Initial capacity of the tables, a power of two. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Keys of the entries, EMPTY for an empty entry. */
+	private int[] _keys;
+
+	/** Values of the entries. */
+	private int[] _values;
+
+	/** Number of entries. */
+	private int _size = 0;
+
+	/**
+	 * Constructor of an empty index.
+	 */
+	public IdIndex() {
+		_keys = new int[INITIAL_CAPACITY];
+		_values = new int[INITIAL_CAPACITY];
+		Arrays.fill(_keys, EMPTY);
+	}
+
+	/**
+	 * Returns the number of entries.
+	 *
+	 * @return the number of entries.
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Returns the value of a key.
+	 *
+	 * @param key The key.
+	 * @return the value of the key, or MISSING if the key is not in the index.
+	 */
+	public int get(int key) {
+		int mask = _keys.length - 1;
+
+		for(int i = hash(key) & mask; _keys[i] != EMPTY; i = (i + 1) & mask) {
+			if(_keys[i] == key) {
+				return _values[i];
+			}
+		}
+		return MISSING;
+	}
+
+	/**
+	 * Sets the value of a key.
+	 *
+	 * @param key The key, any int but Integer.MIN_VALUE.
+	 * @param value The value, not negative.
+	 * @throws IllegalArgumentException if the key or the value cannot be stored.
+	 */
+	public void put(int key, int value) {
+		if(key == EMPTY || value < 0) {
+			throw new IllegalArgumentException("Cannot index " + key + " at " + value);
+		}
+
+		// Tables are kept at most half full, so probes stay short.
+		if(2 * (_size + 1) > _keys.length) {
+			resize(2 * _keys.length);
+		}
+
+		int mask = _keys.length - 1;
+		int i = hash(key) & mask;
+		while(_keys[i] != EMPTY && _keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+
+		if(_keys[i] == EMPTY) {
+			_keys[i] = key;
+			_size++;
+		}
+		_values[i] = value;
+	}
+
+	/**
+	 * Removes a key.
+	 *
+	 * @param key The key.
+	 * @return the value of the key, or MISSING if the key was not in the index.
+	 */
+	public int remove(int key) {
+		int mask = _keys.length - 1;
+		int i = hash(key) & mask;
+
+		while(_keys[i] != key) {
+			if(_keys[i] == EMPTY) {
+				return MISSING;
+			}
+			i = (i + 1) & mask;
+		}
+
+		int value = _values[i];
+		_size--;
+
+		// Shifts back the following entries which would not be found past the hole.
+		int hole = i;
+		for(int j = (i + 1) & mask; _keys[j] != EMPTY; j = (j + 1) & mask) {
+			int home = hash(_keys[j]) & mask;
+			if(((j - home) & mask) >= ((j - hole) & mask)) {
+				_keys[hole] = _keys[j];
+				_values[hole] = _values[j];
+				hole = j;
+			}
+		}
+		_keys[hole] = EMPTY;
+
+		return value;
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	public void clear() {
+		Arrays.fill(_keys, EMPTY);
+		_size = 0;
+	}
+
+	/**
+	 * Moves the entries to tables of another capacity.
+	 *
+	 * @param capacity The new capacity, a power of two.
+	 */
+	private void resize(int capacity) {
+		int[] keys = _keys;
+		int[] values = _values;
+
+		_keys = new int[capacity];
+		_values = new int[capacity];
+		Arrays.fill(_keys, EMPTY);
+
+		int mask = capacity - 1;
+		for(int k = 0; k < keys.length; k++) {
+			if(keys[k] != EMPTY) {
+				int i = hash(keys[k]) & mask;
+				while(_keys[i] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				_keys[i] = keys[k];
+				_values[i] = values[k];
+			}
+		}
+	}
+
+	/**
+	 * Spreads the bits of a key, as ids are mostly consecutive.
+	 *
+	 * @param key The key.
+	 * @return the hash of the key.
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,394 @@
+package storage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import commons.tasks.Task;
+import static utils.logging.Logger.log;
+
+/**
+ * Append-only log of the mutations made to a list of Tasks.
+ * Each mutation is written as a single record, keyed by the id of the Task :
+ *   &lt;A&gt;	&lt;id&gt;	&lt;task&gt;   for an added Task,
+ *   &lt;M&gt;	&lt;id&gt;	&lt;task&gt;   for a modified Task,
+ *   &lt;D&gt;	&lt;id&gt;            for a deleted Task,
+ * where &lt;task&gt; is the line given by TextFormat.
+ *
+ */
+public class Journal {
+
+	/** Record type of an added Task. */
+	public static final String ADD = "A";
+
+	/** Record type of a modified Task. */
+	public static final String MODIFY = "M";
+
+	/** Record type of a deleted Task. */
+	public static final String DELETE = "D";
+
+	/** Journal file. */
+	private File _file;
+
+	/** Stream appending to the journal file. */
+	private PrintWriter _writer;
+	
+	/** The underlying stream of the writer, to force it to the disk. */
+	private FileOutputStream _stream;
+	
+	/** When the appended records are forced to the disk. */
+	private Durability _durability;
+	
+	/** Whether records have been appended since the journal was last forced to the disk. */
+	private boolean _dirty = false;
+	
+	/** The task forcing the journal to the disk periodically, null if not periodic. */
+	private TimerTask _syncTask = null;
+	
+	/** Timer running the periodic tasks of all journals. */
+	private static Timer _syncTimer = null;
+	
+	/** Number of records in the journal. */
+	private int _records = 0;
+	
+	/** Length of the journal, in characters. */
+	private long _length;
+
+	/**
+	 * Constructor specifying the journal file.
+	 * The file is created if it does not exist, and is only truncated to drop a record torn by a crash.
+	 * Appended records are never forced to the disk.
+	 *
+	 * @param file The journal file.
+	 * @throws IOException if the file cannot be opened for appending.
+	 */
+	public Journal(File file) throws IOException {
+		this(file, Durability.NONE, 0);
+	}
+	
+	/**
+	 * Constructor specifying the journal file and the durability of the records.
+	 * The file is created if it does not exist, and is only truncated to drop a record torn by a crash,
+	 * so that the next record is not appended to it.
+	 *
+	 * @param file The journal file.
+	 * @param durability When the appended records are forced to the disk.
+	 * @param syncInterval The interval between two syncs, in milliseconds, for Durability.PERIODIC.
+	 * @throws IOException if the file cannot be opened for appending.
+	 */
+	public Journal(File file, Durability durability, long syncInterval) throws IOException {
+		_file = file;
+		repairTail(file);
+		_stream = new FileOutputStream(file, true);
+		_writer = new PrintWriter(_stream);
+		_length = file.length();
+		_durability = durability;
+		
+		if(durability == Durability.PERIODIC) {
+			_syncTask = new TimerTask() {
+				
+				@Override
+				public void run() {
+					try {
+						sync();
+					} catch(IOException e) {
+						log("Impossible to sync journal " + _file.getAbsolutePath() + ".");
+					}
+				}
+			};
+			getSyncTimer().schedule(_syncTask, syncInterval, syncInterval);
+		}
+	}
+
+	/**
+	 * Returns the journal file.
+	 *
+	 * @return the journal file.
+	 */
+	public File getFile() {
+		return _file;
+	}
+
+	/**
+	 * Returns the number of records in the journal, replayed or appended.
+	 *
+	 * @return the number of records.
+	 */
+	public int getRecords() {
+		return _records;
+	}
+	
+	/**
+	 * Returns the length of the journal.
+	 *
+	 * @return the length of the journal, in characters.
+	 */
+	public long getLength() {
+		return _length;
+	}
+
+	/**
+	 * Appends the record of an added Task.
+	 *
+	 * @param task The added Task.
+	 * @throws IOException if the record cannot be written.
+	 */
+	public void add(Task task) throws IOException {
+		append(record(ADD, task));
+	}
+
+	/**
+	 * Appends the record of a modified Task.
+	 *
+	 * @param task The modified Task.
+	 * @throws IOException if the record cannot be written.
+	 */
+	public void modify(Task task) throws IOException {
+		append(record(MODIFY, task));
+	}
+
+	/**
+	 * Appends the record of a deleted Task.
+	 *
+	 * @param task The deleted Task.
+	 * @throws IOException if the record cannot be written.
+	 */
+	public void delete(Task task) throws IOException {
+		append(record(DELETE, task));
+	}
+	
+	/**
+	 * Returns the record of a mutation.
+	 *
+	 * @param type The record type, ADD, MODIFY or DELETE.
+	 * @param task The Task mutated.
+	 * @return the record, without line separator.
+	 */
+	public static String record(String type, Task task) {
+		String record = "<" + type + ">" + "\t" + "<" + task.getId() + ">";
+		if(!type.equals(DELETE)) {
+			record += "\t" + TextFormat.toLine(task);
+		}
+		return record;
+	}
+	
+	/**
+	 * Appends a record and flushes it to the file, 
+	 * forcing it to the disk if the durability is ALWAYS.
+	 *
+	 * @param record The record to append.
+	 * @throws IOException if the record cannot be written.
+	 */
+	public synchronized void append(String record) throws IOException {
+		write(record);
+		_writer.flush();
+		checkError();
+		
+		_dirty = true;
+		if(_durability == Durability.ALWAYS) {
+			sync();
+		}
+	}
+	
+	/**
+	 * Appends records with a single flush, and forces them to the disk 
+	 * unless the durability is NONE.
+	 *
+	 * @param records The records to append, in order.
+	 * @throws IOException if the records cannot be written.
+	 */
+	public synchronized void appendAll(List<String> records) throws IOException {
+		for(String record : records) {
+			write(record);
+		}
+		_writer.flush();
+		checkError();
+		
+		_dirty = true;
+		if(_durability != Durability.NONE) {
+			sync();
+		}
+	}
+
+	/**
+	 * Forces the records appended since the last sync to the disk.
+	 *
+	 * @throws IOException if the journal cannot be synced.
+	 */
+	public synchronized void sync() throws IOException {
+		if(_dirty) {
+			_stream.getFD().sync();
+			_dirty = false;
+		}
+	}
+
+	/**
+	 * Closes the journal, forcing its records to the disk unless its durability is NONE.
+	 * No more records can be appended afterwards.
+	 */
+	public synchronized void close() {
+		if(_syncTask != null) {
+			_syncTask.cancel();
+		}
+		if(_durability != Durability.NONE) {
+			try {
+				sync();
+			} catch(IOException e) {
+				log("Impossible to sync journal " + _file.getAbsolutePath() + ".");
+			}
+		}
+		_writer.close();
+	}
+
+	/**
+	 * Replays every record of the journal on Tasks indexed by id, in order.
+	 * Replaying is idempotent : an added or modified Task replaces any Task with the same id,
+	 * and deleting a Task that is not indexed does nothing.
+	 * Malformed records, like a record torn by a crash, are skipped.
+	 *
+	 * @param tasksById The Tasks to apply the records to, by id. A LinkedHashMap keeps their order.
+	 * @param ids The allocator observing the id of every record, deleted Tasks included.
+	 * @throws IOException if the journal cannot be read.
+	 */
+	public void replay(Map<Integer, Task> tasksById, IdAllocator ids) throws IOException {
+		BufferedReader bufReader = new BufferedReader(new FileReader(_file));
+
+		try {
+			String str = bufReader.readLine();
+
+			while(str != null) {
+				try {
+					ids.observe(replayRecord(str, tasksById));
+					_records++;
+				} catch(IllegalArgumentException e) {
+					log("Skipped malformed journal record in " + _file.getAbsolutePath() + " : " + str);
+				}
+				str = bufReader.readLine();
+			}
+		} finally {
+			bufReader.close();
+		}
+	}
+
+	/**
+	 * Truncates a journal file after its last complete record, dropping the start of a record
+	 * torn by a crash. That record was never acknowledged, as its write did not return.
+	 *
+	 * @param file The journal file, which may not exist.
+	 * @throws IOException if the file cannot be read or truncated.
+	 */
+	private static void repairTail(File file) throws IOException {
+		if(!file.exists() || file.length() == 0) {
+			return;
+		}
+		
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			long end = raf.length();
+			byte[] buffer = new byte[4096];
+			long position = end;
+			
+			// Searches for the last line separator, backwards.
+			while(position > 0) {
+				int count = (int) Math.min(buffer.length, position);
+				position -= count;
+				raf.seek(position);
+				raf.readFully(buffer, 0, count);
+				for(int i = count - 1; i >= 0; i--) {
+					if(buffer[i] == '\n') {
+						long complete = position + i + 1;
+						if(complete < end) {
+							log("Truncated torn journal record in " + file.getAbsolutePath() + ".");
+							raf.setLength(complete);
+						}
+						return;
+					}
+				}
+			}
+			
+			log("Truncated torn journal record in " + file.getAbsolutePath() + ".");
+			raf.setLength(0);
+		} finally {
+			raf.close();
+		}
+	}
+	
+	/**
+	 * Writes one record to the buffer of the file.
+	 *
+	 * @param record The record to write.
+	 */
+	private void write(String record) {
+		_writer.println(record);
+		_records++;
+		_length += record.length() + 1;
+	}
+	
+	/**
+	 * Checks that the previous writes succeeded.
+	 *
+	 * @throws IOException if a write failed.
+	 */
+	private void checkError() throws IOException {
+		if(_writer.checkError()) {
+			throw new IOException("Impossible to append to " + _file.getAbsolutePath());
+		}
+	}
+	
+	/**
+	 * Returns the timer running the periodic syncs, creating it if needed.
+	 *
+	 * @return the timer of the periodic syncs.
+	 */
+	private static synchronized Timer getSyncTimer() {
+		if(_syncTimer == null) {
+			_syncTimer = new Timer("Journal sync", true);
+		}
+		return _syncTimer;
+	}
+
+	/**
+	 * Applies a single record to the Tasks, indexed by id.
+	 *
+	 * @param record The record to apply.
+	 * @param tasksById The Tasks, indexed by id.
+	 * @return the id of the record.
+	 * @throws IllegalArgumentException if the record is malformed.
+	 */
+	private static int replayRecord(String record, Map<Integer, Task> tasksById) {
+		String[] fields = record.split("\t", 3);
+
+		if(fields.length < 2 || !fields[0].startsWith("<") || !fields[0].endsWith(">") ||
+				!fields[1].startsWith("<") || !fields[1].endsWith(">")) {
+			throw new IllegalArgumentException("Malformed record : " + record);
+		}
+
+		String type = fields[0].substring(1, fields[0].length() - 1);
+		int id;
+		try {
+			id = Integer.parseInt(fields[1].substring(1, fields[1].length() - 1));
+		} catch(NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed record : " + record);
+		}
+
+		if(type.equals(DELETE)) {
+			tasksById.remove(id);
+		} else if(type.equals(ADD) || type.equals(MODIFY)) {
+			if(fields.length != 3) {
+				throw new IllegalArgumentException("Malformed record : " + record);
+			}
+			tasksById.put(id, TextFormat.fromLine(fields[2], id));
+		} else {
+			throw new IllegalArgumentException("Malformed record : " + record);
+		}
+		return id;
+	}
+}
@@ -0,0 +1,102 @@
+package storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import commons.tasks.Task;
+import commons.timeframes.TimeFrame;
+import static utils.logging.Logger.log;
+
+/**
+ * Reads a binary file by mapping it in memory.
+ *
+ * The fixed fields of each record are decoded in place from the mapped buffer, without
+ * copying the record, and the content is only decoded when the Task is first read.
+ * The file stays mapped as long as a Task read from it is referenced.
+ *
+ */
+public class MappedReader {
+
+	/**
+	 * Reads every record of a binary file.
+	 * Malformed records are skipped, and reading stops at a torn record.
+	 *
+	 * @param file The binary file to read.
+	 * @param tasks The list to add the Tasks of the records to, in order.
+	 * @param ids The allocator to advance to the high-water mark of the file.
+	 * @return the number of records read, malformed or not.
+	 * @throws IOException if the file cannot be mapped, or its header is not of a supported version.
+	 */
+	public static int read(File file, List<Task> tasks, IdAllocator ids) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		MappedByteBuffer buffer;
+
+		try {
+			FileChannel channel = raf.getChannel();
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Too large to be mapped : " + file.getAbsolutePath());
+			}
+			// The mapping stays valid once the channel is closed.
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			raf.close();
+		}
+
+		if(buffer.limit() < 4 + 2 || buffer.getInt(0) != BinaryFormat.MAGIC) {
+			throw new IOException("Not a binary storage file.");
+		}
+		short version = buffer.getShort(4);
+		BinaryFormat.checkVersion(version);
+
+		int limit = buffer.limit();
+		int position = BinaryFormat.getHeaderLength(version);
+		if(position > limit) {
+			throw new IOException("Truncated header in " + file.getAbsolutePath());
+		}
+		if(version != BinaryFormat.VERSION_1) {
+			ids.advanceTo(buffer.getInt(4 + 2));
+		}
+
+		int records = 0;
+
+		while(position < limit) {
+			if(limit - position < 4) {
+				log("Skipped torn record in " + file.getAbsolutePath() + ".");
+				break;
+			}
+
+			int length = buffer.getInt(position);
+			int body = position + 4;
+
+			if(length < BinaryFormat.FIXED_LENGTH) {
+				log("Skipped unreadable records in " + file.getAbsolutePath() + " : invalid record length " + length);
+				break;
+			}
+			if(length > limit - body) {
+				log("Skipped torn record in " + file.getAbsolutePath() + ".");
+				break;
+			}
+
+			try {
+				int id = buffer.getInt(body);
+				boolean status = buffer.get(body + 4) != 0;
+				TimeFrame timeframe = BinaryFormat.toTimeFrame(buffer.get(body + 5),
+						buffer.getLong(body + 6), buffer.getLong(body + 14), buffer.get(body + 22));
+
+				tasks.add(new MappedTask(timeframe, id, status, buffer,
+						body + BinaryFormat.FIXED_LENGTH, length - BinaryFormat.FIXED_LENGTH));
+			} catch(IllegalArgumentException e) {
+				log("Skipped malformed record in " + file.getAbsolutePath() + " : " + e.getMessage());
+			}
+
+			records++;
+			position = body + length;
+		}
+
+		return records;
+	}
+}
@@ -0,0 +1,85 @@
+package storage;
+
+import java.nio.ByteBuffer;
+
+import commons.tasks.Task;
+import commons.timeframes.TimeFrame;
+
+/**
+ * Task read from a binary record in a buffer, a mapped file or an off-heap arena,
+ * whose content is decoded only when first read.
+ * The Task, and the Tasks derived from it while undecoded, keep the buffer alive.
+ *
+ */
+class MappedTask extends Task {
+
+	/** The buffer holding the content. */
+	private final ByteBuffer _buffer;
+
+	/** Offset of the content in the buffer. */
+	private final int _offset;
+
+	/** Length of the content in the buffer, in bytes. */
+	private final int _length;
+
+	/** The decoded content, null until first read. */
+	private volatile String _decoded = null;
+
+	/**
+	 * Sole constructor.
+	 *
+	 * @param timeFrame The TimeFrame of the Task.
+	 * @param id The id of the Task.
+	 * @param status The status of the Task.
+	 * @param buffer The buffer holding the content, never written over it.
+	 * @param offset The offset of the content in the buffer.
+	 * @param length The length of the content in the buffer, in bytes.
+	 */
+	MappedTask(TimeFrame timeFrame, int id, boolean status, ByteBuffer buffer, int offset, int length) {
+		super(null, timeFrame, id, status);
+		_buffer = buffer;
+		_offset = offset;
+		_length = length;
+	}
+
+	@Override
+	public String getContent() {
+		String content = _decoded;
+		if(content == null) {
+			// A duplicate has its own position, so the mapping can be shared between threads.
+			// Threads racing here decode equal Strings, either of which can be kept.
+			byte[] bytes = new byte[_length];
+			ByteBuffer buffer = _buffer.duplicate();
+			buffer.position(_offset);
+			buffer.get(bytes);
+
+			content = new String(bytes, BinaryFormat.UTF_8);
+			_decoded = content;
+		}
+		return content;
+	}
+
+	@Override
+	public Task withId(int id) {
+		if(_decoded == null) {
+			return new MappedTask(getTimeFrame(), id, getStatus(), _buffer, _offset, _length);
+		}
+		return super.withId(id);
+	}
+
+	@Override
+	public Task withTimeFrame(TimeFrame timeFrame) {
+		if(_decoded == null) {
+			return new MappedTask(timeFrame, getId(), getStatus(), _buffer, _offset, _length);
+		}
+		return super.withTimeFrame(timeFrame);
+	}
+
+	@Override
+	public Task withStatus(boolean status) {
+		if(_decoded == null) {
+			return new MappedTask(getTimeFrame(), getId(), status, _buffer, _offset, _length);
+		}
+		return super.withStatus(status);
+	}
+}
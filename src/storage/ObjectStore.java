@@ -0,0 +1,64 @@
+package storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import commons.tasks.Task;
+
+/**
+ * TaskStore keeping the Task objects themselves in a list.
+ *
+ */
+class ObjectStore implements TaskStore {
+
+	/** The Tasks, null in free slots. */
+	private ArrayList<Task> _tasks = new ArrayList<Task>();
+
+	@Override
+	public int size() {
+		return _tasks.size();
+	}
+
+	@Override
+	public Task get(int slot) {
+		return _tasks.get(slot);
+	}
+
+	@Override
+	public int getId(int slot) {
+		return _tasks.get(slot).getId();
+	}
+
+	@Override
+	public Task set(int slot, Task task) {
+		return _tasks.set(slot, task);
+	}
+
+	@Override
+	public void add(Task task) {
+		_tasks.add(task);
+	}
+
+	@Override
+	public void pack() {
+		_tasks.removeAll(Collections.singleton(null));
+	}
+
+	@Override
+	public void clear() {
+		_tasks.clear();
+	}
+
+	@Override
+	public List<Task> snapshot() {
+		ArrayList<Task> tasks = new ArrayList<Task>(_tasks.size());
+
+		for(Task task : _tasks) {
+			if(task != null) {
+				tasks.add(task);
+			}
+		}
+		return Collections.unmodifiableList(tasks);
+	}
+}
@@ -0,0 +1,263 @@
+package storage;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+import commons.datetypes.DateType;
+import commons.tasks.Task;
+import commons.timeframes.TimeFrame;
+
+/**
+ * TaskStore keeping the Tasks as binary records, laid out as BinaryFormat writes them,
+ * in an arena allocated outside the heap. The heap only holds the offset of each slot.
+ *
+ * A Task is read from its record as a MappedTask, whose content is decoded when first read.
+ * The arena is only appended to, and growing or packing it copies it into a new one, so the
+ * Tasks read and the snapshots taken keep reading the arena they were read from. An arena
+ * is freed once none of them refers to it any more.
+ *
+ */
+class OffHeapStore implements TaskStore {
+
+	/** Offset of a free slot. */
+	private static final int FREE = -1;
+
+	/** Initial number of slots. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Initial length of the arena, in bytes. */
+	private static final int INITIAL_ARENA = 4096;
+
+	/** Number of slots. */
+	private int _size = 0;
+
+	/** Offset of the record of each slot in the arena, FREE for a free slot. */
+	private int[] _offsets = new int[INITIAL_CAPACITY];
+
+	/** The records, one after the other. */
+	private ByteBuffer _arena = ByteBuffer.allocateDirect(INITIAL_ARENA);
+
+	/** Number of bytes used in the arena. */
+	private int _arenaLength = 0;
+
+	/** Number of bytes of the records no slot refers to. */
+	private int _deadBytes = 0;
+
+	OffHeapStore() {
+	}
+
+	@Override
+	public int size() {
+		return _size;
+	}
+
+	@Override
+	public Task get(int slot) {
+		checkSlot(slot);
+		int position = _offsets[slot];
+		if(position == FREE) {
+			return null;
+		}
+
+		ByteBuffer arena = _arena;
+		int body = position + 4;
+		int length = arena.getInt(position);
+		TimeFrame timeframe = BinaryFormat.toTimeFrame(arena.get(body + 5),
+				arena.getLong(body + 6), arena.getLong(body + 14), arena.get(body + 22));
+
+		return new MappedTask(timeframe, arena.getInt(body), arena.get(body + 4) != 0, arena,
+				body + BinaryFormat.FIXED_LENGTH, length - BinaryFormat.FIXED_LENGTH);
+	}
+
+	@Override
+	public int getId(int slot) {
+		checkSlot(slot);
+		return _arena.getInt(_offsets[slot] + 4);
+	}
+
+	@Override
+	public Task set(int slot, Task task) {
+		Task previous = get(slot);
+		if(previous != null) {
+			_deadBytes += 4 + _arena.getInt(_offsets[slot]);
+		}
+
+		_offsets[slot] = task == null ? FREE : append(task);
+		return previous;
+	}
+
+	@Override
+	public void add(Task task) {
+		if(_size == _offsets.length) {
+			_offsets = Arrays.copyOf(_offsets, 2 * _size);
+		}
+		_offsets[_size++] = append(task);
+	}
+
+	@Override
+	public void pack() {
+		int kept = 0;
+		for(int slot = 0; slot < _size; slot++) {
+			if(_offsets[slot] != FREE) {
+				_offsets[kept++] = _offsets[slot];
+			}
+		}
+		_size = kept;
+
+		if(_deadBytes > 0 && 2 * _deadBytes >= _arenaLength) {
+			packArena();
+		}
+	}
+
+	@Override
+	public void clear() {
+		_size = 0;
+		_offsets = new int[INITIAL_CAPACITY];
+		_arena = ByteBuffer.allocateDirect(INITIAL_ARENA);
+		_arenaLength = 0;
+		_deadBytes = 0;
+	}
+
+	@Override
+	public List<Task> snapshot() {
+		return Collections.unmodifiableList(new Rows(new OffHeapStore(this)));
+	}
+
+	/**
+	 * Copies the slots of a store which are not free, sharing its arena.
+	 *
+	 * @param store The store to copy.
+	 */
+	private OffHeapStore(OffHeapStore store) {
+		_offsets = new int[store._size];
+		for(int slot = 0; slot < store._size; slot++) {
+			if(store._offsets[slot] != FREE) {
+				_offsets[_size++] = store._offsets[slot];
+			}
+		}
+
+		_arena = store._arena;
+		_arenaLength = store._arenaLength;
+	}
+
+	/**
+	 * Appends the record of a Task to the arena, growing it into a new one if needed.
+	 *
+	 * @return the offset of the record.
+	 */
+	private int append(Task task) {
+		TimeFrame timeFrame = task.getTimeFrame();
+		DateType start = BinaryFormat.getStart(timeFrame);
+		DateType end = BinaryFormat.getEnd(timeFrame);
+		byte[] content = task.getContent().getBytes(BinaryFormat.UTF_8);
+
+		int length = 4 + BinaryFormat.FIXED_LENGTH + content.length;
+		reserve(length);
+
+		// Absolute writes past the records already read, so readers sharing the arena are not disturbed.
+		int position = _arenaLength;
+		int body = position + 4;
+		_arena.putInt(position, BinaryFormat.FIXED_LENGTH + content.length);
+		_arena.putInt(body, task.getId());
+		_arena.put(body + 4, (byte) (task.getStatus() ? 1 : 0));
+		_arena.put(body + 5, (byte) timeFrame.getType());
+		_arena.putLong(body + 6, start != null ? start.timestamp() : 0);
+		_arena.putLong(body + 14, end != null ? end.timestamp() : 0);
+		_arena.put(body + 22, (byte) BinaryFormat.getFlags(start, end));
+
+		ByteBuffer buffer = _arena.duplicate();
+		buffer.position(body + BinaryFormat.FIXED_LENGTH);
+		buffer.put(content);
+
+		_arenaLength += length;
+		return position;
+	}
+
+	/**
+	 * Makes room in the arena for a record, copying it into a larger one if needed.
+	 *
+	 * @param length The length of the record, in bytes.
+	 * @throws IllegalStateException if the arena cannot grow enough.
+	 */
+	private void reserve(int length) {
+		if(length <= _arena.capacity() - _arenaLength) {
+			return;
+		}
+		if(length > Integer.MAX_VALUE - _arenaLength) {
+			throw new IllegalStateException("Off-heap arena full at " + _arenaLength + " bytes.");
+		}
+
+		int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(2L * _arena.capacity(), (long) _arenaLength + length));
+		_arena = copy(capacity, false);
+	}
+
+	/**
+	 * Copies the records of the slots into a new arena, dropping the dead ones.
+	 */
+	private void packArena() {
+		_arena = copy(Math.max(INITIAL_ARENA, _arenaLength - _deadBytes), true);
+		_deadBytes = 0;
+	}
+
+	/**
+	 * Copies the arena into a new one.
+	 *
+	 * @param capacity The capacity of the new arena, enough for the records copied.
+	 * @param liveOnly true to copy only the records of the slots, moving them, false to copy every byte.
+	 * @return the new arena.
+	 */
+	private ByteBuffer copy(int capacity, boolean liveOnly) {
+		ByteBuffer arena = ByteBuffer.allocateDirect(capacity);
+		ByteBuffer source = _arena.duplicate();
+
+		if(!liveOnly) {
+			source.position(0);
+			source.limit(_arenaLength);
+			arena.put(source);
+			return arena;
+		}
+
+		for(int slot = 0; slot < _size; slot++) {
+			int position = _offsets[slot];
+			source.limit(position + 4 + source.getInt(position));
+			source.position(position);
+			_offsets[slot] = arena.position();
+			arena.put(source);
+			source.limit(source.capacity());
+		}
+		_arenaLength = arena.position();
+		return arena;
+	}
+
+	private void checkSlot(int slot) {
+		if(slot < 0 || slot >= _size) {
+			throw new IndexOutOfBoundsException("Slot " + slot + " of " + _size);
+		}
+	}
+
+	/**
+	 * List of the Tasks of a store, read when accessed.
+	 */
+	private static class Rows extends AbstractList<Task> implements RandomAccess {
+
+		private final OffHeapStore _store;
+
+		Rows(OffHeapStore store) {
+			_store = store;
+		}
+
+		@Override
+		public Task get(int index) {
+			return _store.get(index);
+		}
+
+		@Override
+		public int size() {
+			return _store.size();
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package storage;
+
+import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import commons.tasks.Task;
+import static utils.logging.Logger.log;
+
+/**
+ * Writes whole lists of Tasks to a file, atomically.
+ *
+ * The Tasks are written to a temporary file next to the target, which is renamed over
+ * the target once complete. A crash while writing leaves the previous file untouched.
+ *
+ * The rename is an atomic move of java.nio.file when the runtime has it, Java 7 or later,
+ * and File.renameTo otherwise. The target is never deleted first : a rename which fails
+ * leaves the previous file and throws. When syncing, the directory is synced after the rename
+ * so that the rename itself survives a power loss, which also needs java.nio.file.
+ *
+ */
+public class SnapshotWriter {
+
+	/** Extension of the temporary file, appended to the name of the target. */
+	public static final String TEMPORARY_EXTENSION = ".tmp";
+
+	/**
+	 * Writes Tasks to a temporary file and renames it over a file.
+	 *
+	 * @param file The file to replace.
+	 * @param tasks The Tasks to write, with their ids.
+	 * @param nextId The high-water mark of the ids.
+	 * @param format The format of the file.
+	 * @param sync true to force the temporary file to the disk before renaming it, and the rename after.
+	 * @throws IOException if the Tasks cannot be written or the file cannot be replaced.
+	 */
+	public static void write(File file, List<Task> tasks, int nextId, StorageFormat format, boolean sync) 
+			throws IOException {
+		File temporary = getTemporaryFile(file);
+		
+		if(format == StorageFormat.BINARY) {
+			writeBinary(temporary, tasks, nextId, sync);
+		} else {
+			writeText(temporary, tasks, nextId, sync);
+		}
+
+		move(temporary, file);
+		if(sync) {
+			syncDirectory(file.getAbsoluteFile().getParentFile());
+		}
+	}
+
+	/**
+	 * Returns the temporary file used to replace a file.
+	 *
+	 * @param file The file to replace.
+	 * @return the temporary file.
+	 */
+	public static File getTemporaryFile(File file) {
+		return new File(file.getPath() + TEMPORARY_EXTENSION);
+	}
+
+	/**
+	 * Writes Tasks to a file in the text format.
+	 *
+	 * @param file The file to write.
+	 * @param tasks The Tasks to write.
+	 * @param nextId The high-water mark of the ids.
+	 * @param sync true to force the file to the disk.
+	 * @throws IOException if the Tasks cannot be written.
+	 */
+	private static void writeText(File file, List<Task> tasks, int nextId, boolean sync) throws IOException {
+		FileOutputStream outFileStream = new FileOutputStream(file);
+		PrintWriter outStream = new PrintWriter(outFileStream);
+
+		try {
+			outStream.println(TextFormat.toHeader(nextId));
+			for(Task task : tasks) {
+				outStream.println(TextFormat.toIdentifiedLine(task));
+			}
+			outStream.flush();
+
+			if(outStream.checkError()) {
+				throw new IOException("Impossible to write " + file.getAbsolutePath());
+			}
+
+			if(sync) {
+				outFileStream.getFD().sync();
+			}
+		} finally {
+			outStream.close();
+		}
+	}
+
+	/**
+	 * Writes Tasks to a file in the binary format.
+	 *
+	 * @param file The file to write.
+	 * @param tasks The Tasks to write.
+	 * @param nextId The high-water mark of the ids.
+	 * @param sync true to force the file to the disk.
+	 * @throws IOException if the Tasks cannot be written.
+	 */
+	private static void writeBinary(File file, List<Task> tasks, int nextId, boolean sync) throws IOException {
+		FileOutputStream outFileStream = new FileOutputStream(file);
+		DataOutputStream outStream = new DataOutputStream(new BufferedOutputStream(outFileStream));
+
+		try {
+			BinaryFormat.writeHeader(outStream, nextId);
+			for(Task task : tasks) {
+				BinaryFormat.writeTask(outStream, task);
+			}
+			outStream.flush();
+
+			if(sync) {
+				outFileStream.getFD().sync();
+			}
+		} finally {
+			outStream.close();
+		}
+	}
+
+	/**
+	 * Moves a file over another one, atomically.
+	 *
+	 * @param source The file to move.
+	 * @param target The file to replace.
+	 * @throws IOException if the file cannot be moved, the target being left untouched.
+	 */
+	private static void move(File source, File target) throws IOException {
+		try {
+			Class<?> path = Class.forName("java.nio.file.Path");
+			Class<?> copyOption = Class.forName("java.nio.file.CopyOption");
+			Object options = options(copyOption, "java.nio.file.StandardCopyOption", "ATOMIC_MOVE", "REPLACE_EXISTING");
+			Method move = Class.forName("java.nio.file.Files").getMethod("move", path, path, options.getClass());
+			move.invoke(null, toPath(source), toPath(target), options);
+			return;
+		} catch(ClassNotFoundException e) {
+			// Before Java 7.
+		} catch(NoSuchMethodException e) {
+			// Before Java 7.
+		} catch(IllegalAccessException e) {
+			throw new IOException("Impossible to rename " + source.getAbsolutePath());
+		} catch(InvocationTargetException e) {
+			throw asIOException(e, "Impossible to rename " + source.getAbsolutePath());
+		}
+
+		if(!source.renameTo(target)) {
+			throw new IOException("Impossible to rename " + source.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Forces the entries of a directory, like a rename, to the disk.
+	 * Nothing is done on the runtimes and platforms which cannot open a directory.
+	 *
+	 * @param directory The directory.
+	 * @throws IOException if the opened directory cannot be synced.
+	 */
+	private static void syncDirectory(File directory) throws IOException {
+		FileChannel channel;
+		try {
+			Class<?> path = Class.forName("java.nio.file.Path");
+			Class<?> openOption = Class.forName("java.nio.file.OpenOption");
+			Object options = options(openOption, "java.nio.file.StandardOpenOption", "READ");
+			Method open = FileChannel.class.getMethod("open", path, options.getClass());
+			channel = (FileChannel) open.invoke(null, toPath(directory), options);
+		} catch(ClassNotFoundException e) {
+			return;
+		} catch(NoSuchMethodException e) {
+			return;
+		} catch(IllegalAccessException e) {
+			return;
+		} catch(InvocationTargetException e) {
+			// Some platforms cannot open a directory.
+			log("Impossible to open directory " + directory.getAbsolutePath() + " to sync it.");
+			return;
+		}
+
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static Object toPath(File file) throws NoSuchMethodException, IllegalAccessException, 
+			InvocationTargetException {
+		return File.class.getMethod("toPath").invoke(file);
+	}
+
+	/**
+	 * Returns an array of the constants of an enumeration of options.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Object options(Class<?> type, String enumeration, String... names) throws ClassNotFoundException {
+		Class enumClass = Class.forName(enumeration);
+		Object options = Array.newInstance(type, names.length);
+		for(int i = 0; i < names.length; i++) {
+			Array.set(options, i, Enum.valueOf(enumClass, names[i]));
+		}
+		return options;
+	}
+
+	private static IOException asIOException(InvocationTargetException e, String message) {
+		if(e.getCause() instanceof IOException) {
+			return (IOException) e.getCause();
+		}
+		return new IOException(message);
+	}
+}
@@ -1,23 +1,24 @@
 package storage;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.StreamCorruptedException;
 import java.util.*;
-import commons.datetypes.DateType;
-import commons.datetypes.OnTheDay;
-import commons.datetypes.Precisely;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import commons.tasks.Task;
-import commons.timeframes.Between;
-import commons.timeframes.By;
-import commons.timeframes.FixPoint;
-import commons.timeframes.From;
-import commons.timeframes.TimeFrame;
-import commons.timeframes.Whenever;
 import commons.exceptions.StorageException;
 import commons.exceptions.TaskNotFoundException;
 import static utils.logging.Logger.log;
@@ -25,15 +26,115 @@ import static utils.logging.Logger.log;
 /**
  * Storage class for Tasks.
  * 
+ * In journaled mode, the storage file is only read, and every mutation is appended
+ * as a single record to a journal file next to it, which is replayed on opening.
+ * The storage file is then a snapshot and the journal a delta over it. Once the journal 
+ * is too long or holds too many dead records, it is closed as a segment and a Compactor
+ * merges it into a new snapshot in the background, while mutations go to a fresh journal.
+ * 
+ * The storage file is never truncated in place : it is replaced by renaming a complete
+ * temporary file over it. Whether writes are forced to the disk depends on the Durability.
+ * 
+ * The storage file is written in a StorageFormat. The format of an existing file is detected
+ * on opening, and a text file opened in the binary format is migrated once, before any mutation.
+ * 
+ * In memory, the Tasks are kept in slots by a TaskStore, chosen by the StorageBackend.
+ * 
+ * A Storage can be shared between threads. Mutations are applied one at a time, holding the
+ * Storage, and only hold the lock of the slots while changing them and the indexes, not while
+ * writing. Lookups only take that lock to read, and getAll returns the published snapshot 
+ * without any lock until a mutation makes it stale.
+ * 
  */
 public class Storage {
 	
-	/** List of all Tasks. */
-	private ArrayList<Task> _taskList = new ArrayList<Task>();
+	/** Slots of all Tasks, in order. A deleted Task leaves a free slot until the store is packed. */
+	private TaskStore _tasks;
+	
+	/** Slot of each Task in the store, by id. */
+	private IdIndex _slots = new IdIndex();
+	
+	/** Number of free slots in the store. */
+	private int _freeSlots = 0;
+	
+	/** Unmodifiable list of the live Tasks, shared by readers, null once a mutation made it stale. */
+	private volatile List<Task> _snapshot = null;
+	
+	/** Lock of the slots and the indexes, written by the mutations and read by the lookups. */
+	private final ReadWriteLock _slotsLock = new ReentrantReadWriteLock();
+	
+	/** Indexes kept in sync with the Tasks. */
+	private List<TaskIndex> _indexes = new ArrayList<TaskIndex>();
+	
+	/** Number of free slots the store may hold before it is packed, if they are half of it. */
+	private static final int MIN_FREE_SLOTS = 64;
 	
 	/** Storage file. */
 	private File _storageFile;
 	
+	/** Journal of the mutations, null if the storage is not journaled. */
+	private Journal _journal = null;
+	
+	/** Extension of the journal file, appended to the name of the storage file. */
+	public static final String JOURNAL_EXTENSION = ".journal";
+	
+	/** Extension of the journal segment being compacted, appended to the name of the journal file. */
+	public static final String SEGMENT_EXTENSION = ".compacting";
+	
+	/** Default length of the journal, in characters, above which it is compacted. */
+	public static final long DEFAULT_MAX_JOURNAL_LENGTH = 4 * 1024 * 1024;
+	
+	/** Default ratio of dead records above which the journal is compacted. */
+	public static final double DEFAULT_MAX_DEAD_RATIO = 0.5;
+	
+	/** Number of records the journal must hold before its ratio of dead records is considered. */
+	private static final int MIN_RECORDS_FOR_RATIO = 128;
+	
+	/** Length of a binary storage file, in bytes, from which it is mapped in memory to be read. */
+	public static final long MAPPED_READ_THRESHOLD = 1024 * 1024;
+	
+	/** Default interval between two syncs for Durability.PERIODIC, in milliseconds. */
+	public static final long DEFAULT_SYNC_INTERVAL = 1000;
+	
+	/** When writes are forced to the disk. */
+	private Durability _durability;
+	
+	/** Format in which the storage file is written. */
+	private StorageFormat _format;
+	
+	/** Interval between two syncs for Durability.PERIODIC, in milliseconds. */
+	private long _syncInterval = DEFAULT_SYNC_INTERVAL;
+	
+	/** Time of the last sync of the storage file. */
+	private long _lastSync = 0;
+	
+	/** Length of the journal above which it is compacted. */
+	private long _maxJournalLength = DEFAULT_MAX_JOURNAL_LENGTH;
+	
+	/** Ratio of dead records above which the journal is compacted. */
+	private double _maxDeadRatio = DEFAULT_MAX_DEAD_RATIO;
+	
+	/** Allocator of the ids, holding their high-water mark. */
+	private IdAllocator _ids = new IdAllocator();
+	
+	/** Number of records in the snapshot the journal applies to. */
+	private int _snapshotRecords = 0;
+	
+	/** Thread running the compactions, created on the first one. */
+	private ExecutorService _compactor = null;
+	
+	/** The last compaction started. */
+	private Future<?> _compaction = null;
+	
+	/** Lock held while writing to the journal or replacing it. */
+	private final Object _journalLock = new Object();
+	
+	/** Writer committing the mutations in groups, null if group commit is disabled. */
+	private GroupCommitWriter _writer = null;
+	
+	/** Whether the writer appended to the journal since the next mutation last checked for compaction. */
+	private volatile boolean _compactionDue = false;
+	
 	/**
 	 * Constructor specifying file path.
 	 * 
@@ -51,10 +152,105 @@ public class Storage {
 	 * @throws StorageException if file cannot be read or created.
 	 */
 	public Storage(File file) throws StorageException {
+		this(file, false);
+	}
+	
+	/**
+	 * Constructor specifying file and whether mutations are journaled.
+	 * 
+	 * @param file File that is to be read from and written to.
+	 * @param journaled true to append mutations to a journal instead of rewriting the file.
+	 * @throws StorageException if file or journal cannot be read or created.
+	 */
+	public Storage(File file, boolean journaled) throws StorageException {
+		this(file, journaled, Durability.NONE);
+	}
+	
+	/**
+	 * Constructor specifying file, whether mutations are journaled, and the durability of writes.
+	 * 
+	 * @param file File that is to be read from and written to.
+	 * @param journaled true to append mutations to a journal instead of rewriting the file.
+	 * @param durability When writes are forced to the disk.
+	 * @throws StorageException if file or journal cannot be read or created.
+	 */
+	public Storage(File file, boolean journaled, Durability durability) throws StorageException {
+		this(file, journaled, durability, StorageFormat.TEXT);
+	}
+	
+	/**
+	 * Constructor specifying file, whether mutations are journaled, the durability of writes,
+	 * and the format of the file. A file in another format is migrated to it.
+	 * 
+	 * @param file File that is to be read from and written to.
+	 * @param journaled true to append mutations to a journal instead of rewriting the file.
+	 * @param durability When writes are forced to the disk.
+	 * @param format Format in which the file is written.
+	 * @throws StorageException if file or journal cannot be read or created, or file cannot be migrated.
+	 */
+	public Storage(File file, boolean journaled, Durability durability, StorageFormat format) throws StorageException {
+		this(file, journaled, durability, format, StorageBackend.OBJECTS);
+	}
+	
+	/**
+	 * Constructor specifying file, whether mutations are journaled, the durability of writes,
+	 * the format of the file, and how the Tasks are kept in memory.
+	 * 
+	 * @param file File that is to be read from and written to.
+	 * @param journaled true to append mutations to a journal instead of rewriting the file.
+	 * @param durability When writes are forced to the disk.
+	 * @param format Format in which the file is written.
+	 * @param backend How the Tasks are kept in memory.
+	 * @throws StorageException if file or journal cannot be read or created, or file cannot be migrated.
+	 */
+	public Storage(File file, boolean journaled, Durability durability, StorageFormat format, 
+			StorageBackend backend) throws StorageException {
+	  _durability = durability;
+	  _format = format;
+	  switch(backend) {
+	  case COLUMNAR:
+	    _tasks = new ColumnarStore();
+	    break;
+	  case OFF_HEAP:
+	    _tasks = new OffHeapStore();
+	    break;
+	  default:
+	    _tasks = new ObjectStore();
+	  }
 	  try {
 	    file.createNewFile();
 	    _storageFile = file;
-	    readFile(_storageFile);
+	    
+	    List<Task> tasks = new ArrayList<Task>();
+	    boolean binary = BinaryFormat.isBinary(_storageFile);
+	    if(binary) {
+	      readBinaryFile(_storageFile, tasks);
+	    } else {
+	      readFile(_storageFile, tasks);
+	    }
+	    
+	    // Tasks by id, in file order, for the journal to find them in constant time.
+	    LinkedHashMap<Integer, Task> tasksById = new LinkedHashMap<Integer, Task>();
+	    for(Task task : tasks) {
+	      if(tasksById.put(task.getId(), task) != null) {
+	        log("Replaced duplicate task " + task.getId() + " in " + file.getAbsolutePath() + ".");
+	      }
+	      _ids.observe(task.getId());
+	    }
+	    
+	    if(binary != (format == StorageFormat.BINARY)) {
+	      // The journal keeps applying to the migrated snapshot, which holds the same ids.
+	      writeSnapshot(new ArrayList<Task>(tasksById.values()));
+	    }
+	    
+	    if(journaled) {
+	      openJournal(tasksById);
+	    }
+	    
+	    for(Task task : tasksById.values()) {
+	      _tasks.add(task);
+	    }
+	    packSlots();
 	  }
 	  catch(IOException e) {				
 	    log("Impossible to open " + file.getAbsolutePath() + ".");				
@@ -68,244 +264,695 @@ public class Storage {
 	 * @return the number of Task objects.
 	 */
 	public int size() {
-		return _taskList.size();
+		_slotsLock.readLock().lock();
+		try {
+			return _tasks.size() - _freeSlots;
+		} finally {
+			_slotsLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Returns the Task with a given id, in constant time.
+	 * 
+	 * @param id The id of the Task.
+	 * @return the Task.
+	 * @throws TaskNotFoundException if no Task has the id.
+	 */
+	public Task get(int id) throws TaskNotFoundException {
+		_slotsLock.readLock().lock();
+		try {
+			int slot = _slots.get(id);
+			if(slot == IdIndex.MISSING) {
+				throw new TaskNotFoundException("Task does not exist.");
+			}
+			return _tasks.get(slot);
+		} finally {
+			_slotsLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Returns the Tasks with given ids, each in constant time, under one lock.
+	 * This is how the ids found by an index are resolved, whatever the backend.
+	 *
+	 * @param ids The ids of the Tasks.
+	 * @return the Tasks, in the order of their ids, without the ids no Task has.
+	 */
+	public List<Task> get(List<Integer> ids) {
+		List<Task> tasks = new ArrayList<Task>(ids.size());
+
+		_slotsLock.readLock().lock();
+		try {
+			for(int id : ids) {
+				int slot = _slots.get(id);
+				if(slot != IdIndex.MISSING) {
+					tasks.add(_tasks.get(slot));
+				}
+			}
+			return tasks;
+		} finally {
+			_slotsLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Tells whether a Task with a given id exists, in constant time.
+	 * 
+	 * @param id The id of the Task.
+	 * @return true if a Task has the id.
+	 */
+	public boolean contains(int id) {
+		_slotsLock.readLock().lock();
+		try {
+			return _slots.get(id) != IdIndex.MISSING;
+		} finally {
+			_slotsLock.readLock().unlock();
+		}
 	}
 
 	/**
-	 * Adds a new Task.
+	 * Allocates the id of a new Task, never used by this storage before.
+	 * Ids are allocated without locking the storage, from any thread.
 	 * 
-	 * @param newTask the task to be added.
+	 * @return the id.
+	 */
+	public int allocateId() {
+		return _ids.allocate();
+	}
+	
+	/**
+	 * Sets the number of ids each thread leases at a time, so threads creating
+	 * many Tasks at once do not contend on the shared counter.
+	 * 
+	 * @param blockSize The number of ids, 1 to lease none.
+	 * @throws IllegalArgumentException if the size is not positive.
+	 */
+	public void setIdBlockSize(int blockSize) {
+		_ids.setBlockSize(blockSize);
+	}
+
+	/**
+	 * Adds a new Task. A Task with the same id is replaced.
+	 * 
+	 * @param newTask the task to be added, with an id given by allocateId or read from this storage.
+	 * @return a Future completed once the Task is written, already completed unless group commit is enabled.
 	 * @throws StorageException if the file cannot be written.
+	 * @throws IllegalArgumentException if the Task has no id.
 	 */
-	public void add(Task newTask) throws StorageException {		
-		_taskList.add(newTask);
-		try{
-			writeFile(_storageFile);
+	public synchronized Future<Void> add(Task newTask) throws StorageException {		
+		if(newTask.getId() == Task.NO_ID) {
+			throw new IllegalArgumentException("Task has no id.");
 		}
-		catch(IOException e) {
-			
-			log("Impossible to save to file " + _storageFile.getAbsolutePath() + ".");
-			
-			throw new StorageException("Impossible to save to storage file.");
+		_slotsLock.writeLock().lock();
+		try {
+			int slot = _slots.get(newTask.getId());
+			if(slot != IdIndex.MISSING) {
+				unindex(_tasks.set(slot, newTask));
+			} else {
+				_slots.put(newTask.getId(), _tasks.size());
+				_tasks.add(newTask);
+			}
+			_ids.observe(newTask.getId());
+			_snapshot = null;
+			index(newTask);
+		} finally {
+			_slotsLock.writeLock().unlock();
 		}
+		return persist(Journal.ADD, newTask);
 	}
 
 	/**
 	 * Deletes a specific existing Task.
 	 * 
 	 * @param oldTask the Task to be deleted.
+	 * @return a Future completed once the deletion is written, already completed unless group commit is enabled.
 	 * @throws TaskNotFound if no Task corresponds to the one specified.
 	 * @throws StorageException if the file can not be saved.
 	 */
-	public void delete(Task oldTask) throws TaskNotFoundException, StorageException {
+	public synchronized Future<Void> delete(Task oldTask) throws TaskNotFoundException, StorageException {
+		Task task;
 		
-		for(Iterator<Task> it = _taskList.iterator(); it.hasNext();) {
-			Task task = it.next();
+		_slotsLock.writeLock().lock();
+		try {
+			int slot = _slots.remove(oldTask.getId());
+			if(slot == IdIndex.MISSING) {
+				throw new TaskNotFoundException("Task does not exist.");
+			}
 			
-			if(task.getId() == oldTask.getId()) {
-				it.remove();				
-				try{
-					writeFile(_storageFile);
-				}
-				catch(IOException e) {					
-					log("Impossible to save to file " + _storageFile.getAbsolutePath() + ".");					
-					throw new StorageException("Impossible to save to storage file.");
-				}				
-				return;
+			task = _tasks.set(slot, null);
+			_freeSlots++;
+			_snapshot = null;
+			unindex(task);
+			if(_freeSlots >= MIN_FREE_SLOTS && 2 * _freeSlots >= _tasks.size()) {
+				packSlots();
 			}
+		} finally {
+			_slotsLock.writeLock().unlock();
 		}
-		throw new TaskNotFoundException("Task does not exist.");
+		
+		return persist(Journal.DELETE, task);
 	}
 	
 	/**
 	 * Replaces a specific existing Task with a modified version.
 	 * 
 	 * @param existingTask the modified Task.
+	 * @return a Future completed once the Task is written, already completed unless group commit is enabled.
 	 * @throws TaskNotFound if no Task corresponds to the one specified.
 	 * @throws StorageException if the file can not be saved.
 	 */
-	public void modify(Task existingTask) throws StorageException, TaskNotFoundException {		
-		int replacementID = existingTask.getId();		
+	public synchronized Future<Void> modify(Task existingTask) throws StorageException, TaskNotFoundException {		
+		_slotsLock.writeLock().lock();
+		try {
+			int slot = _slots.get(existingTask.getId());
+			if(slot == IdIndex.MISSING) {
+				throw new TaskNotFoundException("Task does not exist.");
+			}
+			
+			unindex(_tasks.set(slot, existingTask));
+			_snapshot = null;
+			index(existingTask);
+		} finally {
+			_slotsLock.writeLock().unlock();
+		}
+		return persist(Journal.MODIFY, existingTask);
+	}
+	
+	/**
+	 * Adds an index, kept in sync with the Tasks from now on. 
+	 * The index is cleared, and every existing Task is indexed first.
+	 * 
+	 * @param index The index.
+	 */
+	public synchronized void addIndex(TaskIndex index) {
+		index.clear();
+		for(Task task : getAll()) {
+			index.add(task);
+		}
+		_indexes.add(index);
+	}
+	
+	/**
+	 * Enables or disables group commit.
+	 * 
+	 * With group commit, add, modify and delete return as soon as the mutation is applied 
+	 * and queued. A writer thread then writes every mutation queued so far in one batch, 
+	 * with a single write and sync, and completes the Future of each. The batches are forced
+	 * to the disk unless the durability is NONE. Use flush to wait for every queued mutation.
+	 * 
+	 * @param enabled true to enable group commit, false to disable it.
+	 * @throws StorageException if disabling it fails to write the queued mutations.
+	 */
+	public synchronized void setGroupCommit(boolean enabled) throws StorageException {
+		if(enabled == (_writer != null)) {
+			return;
+		}
 		
-		for (int i=0; i<_taskList.size(); i++) {
-			if (_taskList.get(i).getId() == replacementID) {
-				_taskList.set(i, existingTask);
+		if(enabled) {
+			_writer = new GroupCommitWriter(new StorageSink());
+			return;
+		}
+		
+		// The mutations wait for the queued ones to be written before they write directly,
+		// which the writer thread does without holding the storage.
+		try {
+			_writer.close();
+		} catch(IOException e) {
+			log("Impossible to save to file " + _storageFile.getAbsolutePath() + ".");
+			throw new StorageException("Impossible to save to storage file.");
+		} finally {
+			_writer = null;
+		}
+	}
+	
+	/**
+	 * Waits until every mutation queued for group commit is written.
+	 * Returns immediately if group commit is not enabled.
+	 * 
+	 * @throws StorageException if the queued mutations could not be written.
+	 */
+	public void flush() throws StorageException {
+		GroupCommitWriter writer;
+		synchronized(this) {
+			writer = _writer;
+		}
+		
+		if(writer != null) {
+			try {
+				writer.flush();
+			} catch(IOException e) {
+				log("Impossible to save to file " + _storageFile.getAbsolutePath() + ".");
+				throw new StorageException("Impossible to save to storage file.");
+			}
+		}
+	}
+	
+	/**
+	 * Sets when writes are forced to the disk.
+	 * 
+	 * @param durability When writes are forced to the disk.
+	 * @param syncInterval The interval between two syncs, in milliseconds, for Durability.PERIODIC.
+	 * @throws StorageException if the journal cannot be reopened.
+	 */
+	public synchronized void setDurability(Durability durability, long syncInterval) throws StorageException {
+		_durability = durability;
+		_syncInterval = syncInterval;
+		
+		if(_journal != null) {
+			synchronized(_journalLock) {
+				_journal.close();
 				try {
-					writeFile(_storageFile);
-				} catch(IOException e) {					
-					log("Impossible to save to file " + _storageFile.getAbsolutePath() + ".");					
-					throw new StorageException("Impossible to save to storage file.");
+					_journal = new Journal(_journal.getFile(), _durability, _syncInterval);
+				} catch(IOException e) {
+					log("Impossible to reopen journal " + _journal.getFile().getAbsolutePath() + ".");
+					throw new StorageException("Impossible to open journal file.");
 				}
+			}
+		}
+	}
+	
+	/**
+	 * Sets when the journal is compacted. Has no effect if the storage is not journaled.
+	 * 
+	 * @param maxJournalLength the length of the journal, in characters, above which it is compacted.
+	 * @param maxDeadRatio the ratio of records, in the snapshot and the journal, 
+	 *                     not describing a live Task above which the journal is compacted.
+	 */
+	public void setCompactionThresholds(long maxJournalLength, double maxDeadRatio) {
+		_maxJournalLength = maxJournalLength;
+		_maxDeadRatio = maxDeadRatio;
+	}
+	
+	/**
+	 * Starts a compaction of the journal in the background, unless one is already running.
+	 * Failures are only logged, as the journal and the snapshot stay valid.
+	 * Has no effect if the storage is not journaled.
+	 */
+	public synchronized void compact() {
+		if(_journal == null || isCompacting()) {
+			return;
+		}
+		
+		File journalFile = _journal.getFile();
+		File segment = getSegmentFile(_storageFile);
+		boolean rotated;
+		
+		synchronized(_journalLock) {
+			_journal.close();
+			rotated = journalFile.renameTo(segment);
+			
+			try {
+				_journal = new Journal(journalFile, _durability, _syncInterval);
+			} catch(IOException e) {
+				log("Impossible to reopen journal " + journalFile.getAbsolutePath() + ".");
 				return;
 			}
-		}		
-		throw new TaskNotFoundException("Task does not exist.");
+		}
+		
+		if(!rotated) {
+			log("Impossible to rename journal " + journalFile.getAbsolutePath() + ".");
+			return;
+		}
+		
+		List<Task> snapshot = getAll();
+		_snapshotRecords = snapshot.size();
+		
+		if(_compactor == null) {
+			_compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Storage compactor");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		_compaction = _compactor.submit(new Compactor(_storageFile, segment, snapshot, _ids.getNext(), 
+				_format, _durability != Durability.NONE));
 	}
 	
 	/**
-	 * Returns a list consisting of a copy of all existing tasks.
+	 * Writes the mutations queued for group commit, waits for the running compaction, if any, 
+	 * and closes the journal. The storage must not be modified afterwards.
 	 * 
-	 * @return a list consisting of a copy of all existing tasks.
+	 * @throws StorageException if the queued mutations could not be written.
+	 */
+	public void close() throws StorageException {
+		setGroupCommit(false);
+		
+		Future<?> compaction;
+		synchronized(this) {
+			compaction = _compaction;
+		}
+		
+		if(compaction != null) {
+			try {
+				compaction.get();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch(ExecutionException e) {
+				log("Compaction of " + _storageFile.getAbsolutePath() + " failed.");
+			}
+		}
+		
+		synchronized(this) {
+			if(_compactor != null) {
+				_compactor.shutdown();
+			}
+			if(_journal != null) {
+				_journal.close();
+			}
+		}
+	}
+	
+	/**
+	 * Returns an unmodifiable snapshot of all existing tasks.
+	 * The snapshot is shared until the next mutation, which publishes a new one, 
+	 * so reading it again without mutations in between costs nothing and takes no lock.
+	 * 
+	 * @return an unmodifiable list of all existing tasks.
 	 */
 	public List<Task> getAll() {
-		ArrayList<Task> tasks = new ArrayList<Task>();
+		List<Task> snapshot = _snapshot;
+		if(snapshot != null) {
+			return snapshot;
+		}
 		
-		for (Task task : _taskList) {			
-			Task temp = task.clone();			
-			tasks.add(temp);
+		_slotsLock.readLock().lock();
+		try {
+			// Readers racing here take equal snapshots, either of which can be kept.
+			snapshot = _snapshot;
+			if(snapshot == null) {
+				snapshot = _tasks.snapshot();
+				_snapshot = snapshot;
+			}
+			return snapshot;
+		} finally {
+			_slotsLock.readLock().unlock();
 		}
-		return tasks;
 	}
 	
 	/**
 	 * Update a file with any changes made from all task object.
+	 * The file is replaced atomically, and forced to the disk depending on the durability.
 	 * 
 	 * @param storageFile the text file to write to.
-	 * @throws FileNotFoundException if storageFile cannot be found.
+	 * @throws IOException if storageFile cannot be written.
 	 */
-	private void writeFile(File storageFile) throws FileNotFoundException {
-		FileOutputStream outFileStream = new FileOutputStream(storageFile);
-		PrintWriter outStream = new PrintWriter(outFileStream);
-
-		for (Task temp : _taskList) {			
-			TimeFrame tf = temp.getTimeFrame();
-			int frameType = tf.getType();
-			String dateformat = null;
-			DateType datetype;
-			
-			switch(frameType) {
-			// FixPoint
-			case TimeFrame.FIXPOINT: 
-				datetype = ((FixPoint) tf).getDate();
-				dateformat = dateTypeToString(datetype);
-				break;
-			// By	
-			case TimeFrame.BY:
-				datetype = ((By) tf).getDate();
-				dateformat = "_" + "," + dateTypeToString(datetype);
-				break;
-			// From
-			case TimeFrame.FROM:
-				datetype = ((From) tf).getDate();
-				dateformat = dateTypeToString(datetype) + "," + "_";
-				break;
-			// Between
-			case TimeFrame.BETWEEN:
-				DateType date1 = ((Between) tf).getStart();
-				DateType date2 = ((Between) tf).getEnd();
-				dateformat = dateTypeToString(date1) + "," + dateTypeToString(date2);
-				break;
-			// Whenever
-			case TimeFrame.WHENEVER: dateformat = "";
-				break;
-			default:
-				// Should never reach here.
-				assert(false);
-			}
+	private void writeFile(File storageFile) throws IOException {
+		long now = System.currentTimeMillis();
+		boolean sync = _durability == Durability.ALWAYS ||
+			(_durability == Durability.PERIODIC && now - _lastSync >= _syncInterval);
 		
-			// <status>	<date>	<content>
-			outStream.println("<" + temp.getStatus() + ">" + "\t" + "<" + dateformat + ">" + "\t" + "<" + temp.getContent() + ">");
+		SnapshotWriter.write(storageFile, getAll(), _ids.getNext(), _format, sync);
+		
+		if(sync) {
+			_lastSync = now;
+		}
+	}
+	
+	/**
+	 * Adds a Task to every index.
+	 * 
+	 * @param task The Task.
+	 */
+	private void index(Task task) {
+		for(TaskIndex index : _indexes) {
+			index.add(task);
 		}
-		outStream.close();
+	}
+	
+	/**
+	 * Removes a Task from every index.
+	 * 
+	 * @param task The Task, as it was indexed.
+	 */
+	private void unindex(Task task) {
+		for(TaskIndex index : _indexes) {
+			index.remove(task);
+		}
+	}
+	
+	/**
+	 * Removes the free slots from the store, and indexes the slots again.
+	 */
+	private void packSlots() {
+		if(_freeSlots > 0) {
+			_tasks.pack();
+			_freeSlots = 0;
+		}
+		
+		_slots.clear();
+		for(int i = 0; i < _tasks.size(); i++) {
+			_slots.put(_tasks.getId(i), i);
+		}
+	}
+	
+	/**
+	 * Replaces the storage file with a snapshot, forced to the disk unless the durability is NONE.
+	 * 
+	 * @param tasks The Tasks of the snapshot.
+	 * @throws IOException if the snapshot cannot be written.
+	 */
+	private void writeSnapshot(List<Task> tasks) throws IOException {
+		SnapshotWriter.write(_storageFile, tasks, _ids.getNext(), _format, _durability != Durability.NONE);
 	}
 	
 	/**
 	 * Read strings from a file and convert them to Task objects.
 	 * 
 	 * @param storageFile a text file to read information to construct Task objects from.
+	 * @param tasks the list to add the Task objects to, in order.
 	 * @throws IOException if storageFile cannot be read.
 	 */
-	private void readFile(File storageFile) throws IOException {
+	private void readFile(File storageFile, List<Task> tasks) throws IOException {
 		FileReader fileReader = new FileReader(storageFile);
 		BufferedReader bufReader = new BufferedReader(fileReader);
 		
 		String str = bufReader.readLine();
+		
+		if(str != null && TextFormat.isHeader(str)) {
+			try {
+				_ids.advanceTo(TextFormat.fromHeader(str));
+			} catch(IllegalArgumentException e) {
+				log("Skipped malformed header in " + storageFile.getAbsolutePath() + " : " + str);
+			}
+			str = bufReader.readLine();
+		}
+		
+		// Lines written without ids get them by position, as they always did.
+		int id = 0;
 			
 		while ((str != null)) {
-			String[] tempHolder = str.split("\t");
-			
-			for(int i=0;i<tempHolder.length; i++) {
-				String thingo = tempHolder[i];
-				thingo = thingo.substring(1, (thingo.length())-1);
-				tempHolder[i] = thingo;
+			try {
+				Task temp = TextFormat.fromLine(str, id);
+				tasks.add(temp);
+			} catch(IllegalArgumentException e) {
+				log("Skipped malformed line in " + storageFile.getAbsolutePath() + " : " + str);
 			}
+			
+			id++;
+			str = bufReader.readLine();
+		}
+		bufReader.close();
 		
-			// Get Status
-			boolean status = false;
-			if (tempHolder[0].compareTo("true") == 0) {
-				status = true;
-			}
-						
-			// Set Date
-			TimeFrame timeframe;
+		_snapshotRecords = id;
+	}
+	
+	/**
+	 * Read the records of a binary file and convert them to Task objects.
+	 * The Tasks keep the ids of their records. Large files are mapped in memory, 
+	 * and the content of their Tasks is decoded when first read.
+	 * 
+	 * @param storageFile a binary file to read Task objects from.
+	 * @param tasks the list to add the Task objects to, in order.
+	 * @throws IOException if storageFile cannot be read, or is not of a supported version.
+	 */
+	private void readBinaryFile(File storageFile, List<Task> tasks) throws IOException {
+		if(storageFile.length() >= MAPPED_READ_THRESHOLD) {
+			_snapshotRecords = MappedReader.read(storageFile, tasks, _ids);
+			return;
+		}
+		
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(storageFile)));
+		int records = 0;
+		
+		try {
+			_ids.advanceTo(BinaryFormat.readHeader(in));
 			
-			if (tempHolder[1].length() == 0) {
-				// Whenever
-				timeframe = new Whenever();
-			} else {				
-				String[] dates = tempHolder[1].split(",");
-				
-				if(dates.length == 1) {
-					DateType datetype = stringToDateType(dates[0]);
-					timeframe = new FixPoint(datetype);
-				} else {
-					if(dates[0].equals("_")) {
-						// By
-						DateType datetype = stringToDateType(dates[1]);
-						timeframe = new By(datetype);
-					} else {
-						if(dates[1].equals("_")) {
-							// From
-							DateType datetype = stringToDateType(dates[0]);
-							timeframe = new From(datetype);
-						} else {
-							// Between
-							DateType date1 = stringToDateType(dates[0]);
-							DateType date2 = stringToDateType(dates[1]);
-							timeframe = new Between(date1, date2);
-						}
+			while(true) {
+				try {
+					Task temp = BinaryFormat.readTask(in, storageFile.length());
+					if(temp == null) {
+						break;
 					}
+					tasks.add(temp);
+				} catch(IllegalArgumentException e) {
+					log("Skipped malformed record in " + storageFile.getAbsolutePath() + " : " + e.getMessage());
 				}
-			}	
-				
-			// Set Content
-			String content = tempHolder[2];
-			Task temp = new Task(content, timeframe, status);
+				records++;
+			}
+		} catch(EOFException e) {
+			log("Skipped torn record in " + storageFile.getAbsolutePath() + ".");
+		} catch(StreamCorruptedException e) {
+			log("Skipped unreadable records in " + storageFile.getAbsolutePath() + " : " + e.getMessage());
+		} finally {
+			in.close();
+		}
+		
+		_snapshotRecords = records;
+	}
+	
+	/**
+	 * Opens the journal and replays it over the snapshot.
+	 * A segment left by an interrupted compaction is replayed first, 
+	 * and then merged with the journal in a new snapshot.
+	 * 
+	 * @param tasksById The Tasks of the snapshot by id, to replay the journal on.
+	 * @throws IOException if the journal cannot be read or a segment cannot be merged.
+	 */
+	private void openJournal(Map<Integer, Task> tasksById) throws IOException {
+		File segmentFile = getSegmentFile(_storageFile);
+		boolean interrupted = segmentFile.exists();
+		
+		if(interrupted) {
+			Journal segment = new Journal(segmentFile);
+			segment.replay(tasksById, _ids);
+			segment.close();
+		}
+		
+		_journal = new Journal(getJournalFile(_storageFile), _durability, _syncInterval);
+		_journal.replay(tasksById, _ids);
+		
+		if(interrupted) {
+			writeSnapshot(new ArrayList<Task>(tasksById.values()));
+			_snapshotRecords = tasksById.size();
+			segmentFile.delete();
 			
-			_taskList.add(temp);
-			str = bufReader.readLine();
+			_journal.close();
+			new FileOutputStream(_journal.getFile()).close();
+			_journal = new Journal(_journal.getFile(), _durability, _syncInterval);
 		}
 	}
 	
 	/**
-	 * Converts a String to a DateType object.
+	 * Starts a compaction if the journal is too long or holds too many dead records.
+	 */
+	private void compactIfNeeded() {
+		int journalRecords;
+		long journalLength;
+		
+		synchronized(_journalLock) {
+			journalRecords = _journal.getRecords();
+			journalLength = _journal.getLength();
+		}
+		
+		int records = _snapshotRecords + journalRecords;
+		int deadRecords = records - size();
+		
+		if(journalLength > _maxJournalLength || 
+				(journalRecords >= MIN_RECORDS_FOR_RATIO && deadRecords > _maxDeadRatio * records)) {
+			compact();
+		}
+	}
+	
+	/**
+	 * Writes a mutation already applied to the list of Tasks, 
+	 * or queues it if group commit is enabled.
 	 * 
-	 * @param text The string holding the information of DateType.
-	 * @return a DateType object.
+	 * @param type The type of the mutation, as a journal record type.
+	 * @param task The Task mutated.
+	 * @return a Future completed once the mutation is written.
+	 * @throws StorageException if the mutation cannot be written.
 	 */
-	private static DateType stringToDateType(String text) {
-		if(text.startsWith(".")) {
-			text = text.substring(1);
-			long timestamp = Long.parseLong(text);
-			return new Precisely(new Date(timestamp));
-		} else {
-			long timestamp = Long.parseLong(text);
-			return new OnTheDay(new Date(timestamp));
+	private Future<Void> persist(String type, Task task) throws StorageException {
+		if(_writer != null) {
+			if(_compactionDue) {
+				_compactionDue = false;
+				compactIfNeeded();
+			}
+			// Without journal, the record only marks the batch as holding a mutation.
+			return _writer.submit(_journal != null ? Journal.record(type, task) : type);
 		}
+		
+		try{
+			if(_journal != null) {
+				synchronized(_journalLock) {
+					_journal.append(Journal.record(type, task));
+				}
+				compactIfNeeded();
+			} else {
+				writeFile(_storageFile);
+			}
+		}
+		catch(IOException e) {
+			log("Impossible to save to file " + _storageFile.getAbsolutePath() + ".");
+			throw new StorageException("Impossible to save to storage file.");
+		}
+		
+		return WriteFuture.completed();
+	}
+	
+	/**
+	 * Tells whether a compaction is running.
+	 * 
+	 * @return true if a compaction is running, false otherwise.
+	 */
+	private boolean isCompacting() {
+		return _compaction != null && !_compaction.isDone();
 	}
 	
 	/**
-	 * Converts a DateType object to a String.
+	 * Returns the journal file of a storage file.
 	 * 
-	 * @param dateType An object holding information of the type of date and information of date.
-	 * @return the String used to store that DateType.
+	 * @param storageFile The storage file.
+	 * @return the journal file.
 	 */
-	private static String dateTypeToString(DateType dateType) {
-		String string = "";
-		if(dateType.isPrecise()) {
-			string += ".";
+	public static File getJournalFile(File storageFile) {
+		return new File(storageFile.getPath() + JOURNAL_EXTENSION);
+	}
+	
+	/**
+	 * Returns the journal segment being compacted of a storage file.
+	 * 
+	 * @param storageFile The storage file.
+	 * @return the journal segment.
+	 */
+	public static File getSegmentFile(File storageFile) {
+		return new File(getJournalFile(storageFile).getPath() + SEGMENT_EXTENSION);
+	}
+	
+	/**
+	 * Sink of the group commit writer, writing batches to the journal, 
+	 * or the whole list of Tasks to the storage file if the storage is not journaled.
+	 */
+	private class StorageSink implements GroupCommitWriter.Sink {
+
+		@Override
+		public void write(List<String> records) throws IOException {
+			if(records.isEmpty()) {
+				return;
+			}
+			
+			boolean journaled;
+			synchronized(_journalLock) {
+				journaled = _journal != null;
+				if(journaled) {
+					_journal.appendAll(records);
+				}
+			}
+			
+			// The storage is not held here, as it is while the writer is closed : the next mutation
+			// checks for compaction, and the snapshot is taken before the high-water mark of its ids.
+			if(journaled) {
+				_compactionDue = true;
+			} else {
+				List<Task> snapshot = getAll();
+				int nextId = _ids.getNext();
+				SnapshotWriter.write(_storageFile, snapshot, nextId, _format, _durability != Durability.NONE);
+			}
 		}
-		string += dateType.timestamp();
-		return string;
 	}
 }
@@ -0,0 +1,27 @@
+package storage;
+
+/**
+ * Backends keeping the Tasks of a Storage in memory.
+ * The backend does not change what is written to the storage file.
+ *
+ */
+public enum StorageBackend {
+
+	/** The Task objects themselves, as given to the Storage. */
+	OBJECTS,
+
+	/**
+	 * The fields of the Tasks in parallel primitive arrays and their contents in a shared array,
+	 * as a ColumnarStore keeps them. Tasks are built when read, so large lists take a fraction
+	 * of the heap, at the cost of building a Task on every read.
+	 */
+	COLUMNAR,
+
+	/**
+	 * Binary records in an arena outside the heap, as an OffHeapStore keeps them, for archives of
+	 * millions of Tasks. The heap holds an offset per Task, and a Task is read from its record
+	 * when accessed, decoding its content when first read. The arena counts against the limit
+	 * of direct memory of the JVM.
+	 */
+	OFF_HEAP
+}
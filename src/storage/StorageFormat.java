@@ -0,0 +1,15 @@
+package storage;
+
+/**
+ * Formats of the storage file written by a Storage.
+ * The format of an existing file is detected on reading, whatever the format written.
+ *
+ */
+public enum StorageFormat {
+
+	/** One line of text per Task, as given by TextFormat. */
+	TEXT,
+
+	/** A header followed by one length-prefixed record per Task, as given by BinaryFormat. */
+	BINARY
+}
@@ -0,0 +1,31 @@
+package storage;
+
+import commons.tasks.Task;
+
+/**
+ * Index over the Tasks of a Storage, kept in sync by the Storage.
+ * The Storage calls it while holding its lock, so an index sees the mutations one at a time, in order.
+ * Its queries may run in other threads meanwhile, so it must guard its own state.
+ *
+ */
+public interface TaskIndex {
+
+	/**
+	 * Indexes a Task, added or replacing a removed one.
+	 *
+	 * @param task The Task to index.
+	 */
+	void add(Task task);
+
+	/**
+	 * Removes a Task from the index, deleted or about to be replaced.
+	 *
+	 * @param task The Task, as it was indexed.
+	 */
+	void remove(Task task);
+
+	/**
+	 * Removes every Task from the index.
+	 */
+	void clear();
+}
@@ -0,0 +1,71 @@
+package storage;
+
+import java.util.List;
+
+import commons.tasks.Task;
+
+/**
+ * Slots holding the Tasks of a Storage, in order, as kept by a StorageBackend.
+ * A slot is freed by setting it to null, and free slots are only removed by packing.
+ * The Storage calls a store while holding its lock.
+ *
+ */
+interface TaskStore {
+
+	/**
+	 * Returns the number of slots, free ones included.
+	 *
+	 * @return the number of slots.
+	 */
+	int size();
+
+	/**
+	 * Returns the Task of a slot.
+	 *
+	 * @param slot The slot.
+	 * @return the Task, or null if the slot is free.
+	 */
+	Task get(int slot);
+
+	/**
+	 * Returns the id of the Task of a slot, without building the Task.
+	 *
+	 * @param slot The slot, not free.
+	 * @return the id of the Task.
+	 */
+	int getId(int slot);
+
+	/**
+	 * Replaces the Task of a slot.
+	 *
+	 * @param slot The slot.
+	 * @param task The new Task, or null to free the slot.
+	 * @return the previous Task, or null if the slot was free.
+	 */
+	Task set(int slot, Task task);
+
+	/**
+	 * Adds a Task in a new slot, after every other.
+	 *
+	 * @param task The Task.
+	 */
+	void add(Task task);
+
+	/**
+	 * Removes the free slots, keeping the Tasks in order.
+	 */
+	void pack();
+
+	/**
+	 * Removes every slot.
+	 */
+	void clear();
+
+	/**
+	 * Returns the Tasks of the slots which are not free, in order.
+	 * The list is not changed by later mutations of the store.
+	 *
+	 * @return an unmodifiable list of the Tasks.
+	 */
+	List<Task> snapshot();
+}
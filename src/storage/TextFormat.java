@@ -0,0 +1,235 @@
+package storage;
+
+import java.util.Date;
+
+import commons.datetypes.DateType;
+import commons.datetypes.OnTheDay;
+import commons.datetypes.Precisely;
+import commons.tasks.Task;
+import commons.timeframes.Between;
+import commons.timeframes.By;
+import commons.timeframes.FixPoint;
+import commons.timeframes.From;
+import commons.timeframes.TimeFrame;
+import commons.timeframes.Whenever;
+
+/**
+ * Text representation of a Task, one Task per line.
+ * The format of a line is : &lt;status&gt;	&lt;date&gt;	&lt;content&gt;
+ * An identified line starts with the id of the Task : &lt;id&gt;	&lt;status&gt;	&lt;date&gt;	&lt;content&gt;
+ * A file of identified lines starts with a header line holding the high-water mark of the ids : &lt;#next&gt;
+ *
+ */
+public class TextFormat {
+
+	/**
+	 * Converts a Task to a line of text.
+	 *
+	 * @param task The Task to convert.
+	 * @return the line representing the Task, without line separator.
+	 */
+	public static String toLine(Task task) {
+		TimeFrame tf = task.getTimeFrame();
+		int frameType = tf.getType();
+		String dateformat = null;
+		DateType datetype;
+
+		switch(frameType) {
+		// FixPoint
+		case TimeFrame.FIXPOINT:
+			datetype = ((FixPoint) tf).getDate();
+			dateformat = dateTypeToString(datetype);
+			break;
+		// By
+		case TimeFrame.BY:
+			datetype = ((By) tf).getDate();
+			dateformat = "_" + "," + dateTypeToString(datetype);
+			break;
+		// From
+		case TimeFrame.FROM:
+			datetype = ((From) tf).getDate();
+			dateformat = dateTypeToString(datetype) + "," + "_";
+			break;
+		// Between
+		case TimeFrame.BETWEEN:
+			DateType date1 = ((Between) tf).getStart();
+			DateType date2 = ((Between) tf).getEnd();
+			dateformat = dateTypeToString(date1) + "," + dateTypeToString(date2);
+			break;
+		// Whenever
+		case TimeFrame.WHENEVER: dateformat = "";
+			break;
+		default:
+			// Should never reach here.
+			assert(false);
+		}
+
+		// <status>	<date>	<content>
+		return "<" + task.getStatus() + ">" + "\t" + "<" + dateformat + ">" + "\t" + "<" + task.getContent() + ">";
+	}
+
+	/**
+	 * Converts a Task to a line of text starting with its id.
+	 *
+	 * @param task The Task to convert.
+	 * @return the identified line representing the Task, without line separator.
+	 */
+	public static String toIdentifiedLine(Task task) {
+		return "<" + task.getId() + ">" + "\t" + toLine(task);
+	}
+
+	/**
+	 * Returns the header line of a file.
+	 *
+	 * @param nextId The high-water mark of the ids.
+	 * @return the header line, without line separator.
+	 */
+	public static String toHeader(int nextId) {
+		return "<#" + nextId + ">";
+	}
+
+	/**
+	 * Tells whether a line is a header line.
+	 *
+	 * @param line The line to check.
+	 * @return true if the line is a header line.
+	 */
+	public static boolean isHeader(String line) {
+		return line.startsWith("<#");
+	}
+
+	/**
+	 * Reads the high-water mark of the ids from a header line.
+	 *
+	 * @param line The header line.
+	 * @return the high-water mark of the ids.
+	 * @throws IllegalArgumentException if the header line is malformed.
+	 */
+	public static int fromHeader(String line) {
+		if(!isHeader(line) || !line.endsWith(">")) {
+			throw new IllegalArgumentException("Malformed header : " + line);
+		}
+		try {
+			return Integer.parseInt(line.substring(2, line.length() - 1));
+		} catch(NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed header : " + line);
+		}
+	}
+
+	/**
+	 * Converts a line of text to a Task.
+	 * If the line is identified, the Task gets the id of the line, otherwise the given id.
+	 *
+	 * @param line The line holding the information of the Task.
+	 * @param id The id of the Task, if the line is not identified.
+	 * @return the Task described by the line.
+	 * @throws IllegalArgumentException if the line is malformed.
+	 */
+	public static Task fromLine(String line, int id) {
+		if(line.length() > 1 && line.charAt(0) == '<' && Character.isDigit(line.charAt(1))) {
+			int end = line.indexOf(">\t");
+			if(end < 0) {
+				throw new IllegalArgumentException("Malformed line : " + line);
+			}
+			try {
+				id = Integer.parseInt(line.substring(1, end));
+			} catch(NumberFormatException e) {
+				throw new IllegalArgumentException("Malformed line : " + line);
+			}
+			line = line.substring(end + 2);
+		}
+
+		String[] tempHolder = line.split("\t", 3);
+
+		if(tempHolder.length != 3) {
+			throw new IllegalArgumentException("Malformed line : " + line);
+		}
+
+		for(int i=0;i<tempHolder.length; i++) {
+			String thingo = tempHolder[i];
+			if(thingo.length() < 2 || thingo.charAt(0) != '<' || thingo.charAt(thingo.length() - 1) != '>') {
+				throw new IllegalArgumentException("Malformed line : " + line);
+			}
+			thingo = thingo.substring(1, (thingo.length())-1);
+			tempHolder[i] = thingo;
+		}
+
+		// Get Status
+		boolean status = false;
+		if (tempHolder[0].compareTo("true") == 0) {
+			status = true;
+		}
+
+		// Set Date
+		TimeFrame timeframe;
+
+		try {
+			if (tempHolder[1].length() == 0) {
+				// Whenever
+				timeframe = new Whenever();
+			} else {
+				String[] dates = tempHolder[1].split(",");
+
+				if(dates.length == 1) {
+					DateType datetype = stringToDateType(dates[0]);
+					timeframe = new FixPoint(datetype);
+				} else {
+					if(dates[0].equals("_")) {
+						// By
+						DateType datetype = stringToDateType(dates[1]);
+						timeframe = new By(datetype);
+					} else {
+						if(dates[1].equals("_")) {
+							// From
+							DateType datetype = stringToDateType(dates[0]);
+							timeframe = new From(datetype);
+						} else {
+							// Between
+							DateType date1 = stringToDateType(dates[0]);
+							DateType date2 = stringToDateType(dates[1]);
+							timeframe = new Between(date1, date2);
+						}
+					}
+				}
+			}
+		} catch(NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed date in line : " + line);
+		}
+
+		// Set Content
+		String content = tempHolder[2];
+		return new Task(content, timeframe, id, status);
+	}
+
+	/**
+	 * Converts a String to a DateType object.
+	 *
+	 * @param text The string holding the information of DateType.
+	 * @return a DateType object.
+	 */
+	private static DateType stringToDateType(String text) {
+		if(text.startsWith(".")) {
+			text = text.substring(1);
+			long timestamp = Long.parseLong(text);
+			return new Precisely(new Date(timestamp));
+		} else {
+			long timestamp = Long.parseLong(text);
+			return new OnTheDay(new Date(timestamp));
+		}
+	}
+
+	/**
+	 * Converts a DateType object to a String.
+	 *
+	 * @param dateType An object holding information of the type of date and information of date.
+	 * @return the String used to store that DateType.
+	 */
+	private static String dateTypeToString(DateType dateType) {
+		String string = "";
+		if(dateType.isPrecise()) {
+			string += ".";
+		}
+		string += dateType.timestamp();
+		return string;
+	}
+}
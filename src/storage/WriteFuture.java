@@ -0,0 +1,110 @@
+package storage;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future of a write made by a Storage, completed once the write is on the disk.
+ * 
+ */
+public class WriteFuture implements Future<Void> {
+	
+	/** The record to write, null if there is nothing to write. */
+	private final String _record;
+	
+	/** Released once the write is complete or has failed. */
+	private final CountDownLatch _done = new CountDownLatch(1);
+	
+	/** The cause of the failure, null if the write succeeded or is not complete. */
+	private volatile Throwable _failure = null;
+	
+	/**
+	 * Sole constructor.
+	 * 
+	 * @param record The record to write, null if there is nothing to write.
+	 */
+	public WriteFuture(String record) {
+		_record = record;
+	}
+	
+	/**
+	 * Returns a future already completed.
+	 * 
+	 * @return a completed future.
+	 */
+	public static WriteFuture completed() {
+		WriteFuture future = new WriteFuture(null);
+		future.complete();
+		return future;
+	}
+	
+	/**
+	 * Returns the record to write.
+	 * 
+	 * @return the record to write, null if there is nothing to write.
+	 */
+	public String getRecord() {
+		return _record;
+	}
+	
+	/**
+	 * Marks the write as complete.
+	 */
+	public void complete() {
+		_done.countDown();
+	}
+	
+	/**
+	 * Marks the write as failed.
+	 * 
+	 * @param failure The cause of the failure.
+	 */
+	public void fail(Throwable failure) {
+		_failure = failure;
+		_done.countDown();
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return false;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return false;
+	}
+
+	@Override
+	public boolean isDone() {
+		return _done.getCount() == 0;
+	}
+
+	@Override
+	public Void get() throws InterruptedException, ExecutionException {
+		_done.await();
+		return result();
+	}
+
+	@Override
+	public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if(!_done.await(timeout, unit)) {
+			throw new TimeoutException();
+		}
+		return result();
+	}
+	
+	/**
+	 * Returns the result of a complete write.
+	 * 
+	 * @throws ExecutionException if the write failed.
+	 */
+	private Void result() throws ExecutionException {
+		if(_failure != null) {
+			throw new ExecutionException(_failure);
+		}
+		return null;
+	}
+}
@@ -1,20 +1,55 @@
 package utils;
 
 import java.text.SimpleDateFormat;
+import java.util.Date;
 
 /**
  * Utility class. Contains date formats.
  *
  */
 public class DateFormats {
-	
+
 	/** Format for complete date and time. */
-	public static final SimpleDateFormat DATE_AND_TIME_FORMAT = new SimpleDateFormat("E d MMM yy, h:mm a");
-	
+	public static final Format DATE_AND_TIME_FORMAT = new Format("E d MMM yy, h:mm a");
+
 	/** Format for date only. */
-	public static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("E d MMM yy");
-	
+	public static final Format DATE_FORMAT = new Format("E d MMM yy");
+
 	/** Format for time only. */
-	public static final SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("h:mm a");
-	
+	public static final Format TIME_FORMAT = new Format("h:mm a");
+
+	/**
+	 * Date format which can be used by many threads at once.
+	 * A SimpleDateFormat keeps the date it is formatting, so each thread has its own.
+	 *
+	 */
+	public static class Format {
+
+		private final ThreadLocal<SimpleDateFormat> _formats;
+
+		/**
+		 * Constructor specifying the pattern.
+		 *
+		 * @param pattern The pattern of SimpleDateFormat.
+		 */
+		public Format(final String pattern) {
+			_formats = new ThreadLocal<SimpleDateFormat>() {
+
+				@Override
+				protected SimpleDateFormat initialValue() {
+					return new SimpleDateFormat(pattern);
+				}
+			};
+		}
+
+		/**
+		 * Formats a Date.
+		 *
+		 * @param date The Date.
+		 * @return the text of the Date.
+		 */
+		public String format(Date date) {
+			return _formats.get().format(date);
+		}
+	}
 }
@@ -0,0 +1,110 @@
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import logic.AgendaIndex;
+
+import commons.datetypes.DateType;
+import commons.datetypes.OnTheDay;
+import commons.datetypes.Precisely;
+import commons.tasks.Task;
+import commons.tasks.TaskComparator;
+import commons.timeframes.Between;
+import commons.timeframes.By;
+import commons.timeframes.FixPoint;
+import commons.timeframes.From;
+import commons.timeframes.TimeFrame;
+import commons.timeframes.Whenever;
+
+import static org.junit.Assert.assertEquals;
+
+public class AgendaIndexTest {
+
+	private static final long HOUR = 3600000L;
+
+	private Random random = new Random(11);
+
+	private Date randomInstant() {
+		return new Date(1400000000000L + random.nextInt(24 * 8) * HOUR + random.nextInt(60) * 60000L);
+	}
+
+	private DateType randomDate() {
+		return random.nextBoolean() ? new Precisely(randomInstant()) : new OnTheDay(randomInstant());
+	}
+
+	private TimeFrame randomTimeFrame() {
+		switch(random.nextInt(5)) {
+		case 0: return new FixPoint(randomDate());
+		case 1: return new By(randomDate());
+		case 2: return new From(randomDate());
+		case 3: return new Between(randomDate(), randomDate());
+		default: return new Whenever();
+		}
+	}
+
+	private static List<Integer> ids(List<Task> tasks) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for(Task task : tasks) {
+			ids.add(task.getId());
+		}
+		return ids;
+	}
+
+	/**
+	 * Tests that the agenda of the index is the one of the TimeFrame predicates,
+	 * in the order of TaskComparator, as Tasks are added, done and removed.
+	 */
+	@Test public void testAgenda() {
+		AgendaIndex index = new AgendaIndex();
+		List<Task> tasks = new ArrayList<Task>();
+
+		for(int i = 0; i < 500; i++) {
+			Task task = new Task("task " + i, randomTimeFrame(), i, random.nextInt(4) == 0);
+			tasks.add(task);
+			index.add(task);
+		}
+		for(int i = 0; i < 500; i += 3) {
+			index.remove(tasks.get(i));
+			Task task = tasks.get(i).withStatus(!tasks.get(i).getStatus());
+			tasks.set(i, task);
+			index.add(task);
+		}
+		for(int i = 499; i >= 0; i -= 7) {
+			index.remove(tasks.remove(i));
+		}
+
+		for(int q = 0; q < 200; q++) {
+			Date day = randomInstant();
+			List<Task> mustDo = new ArrayList<Task>();
+			List<Task> shouldDo = new ArrayList<Task>();
+			List<Task> missed = new ArrayList<Task>();
+
+			for(Task task : tasks) {
+				TimeFrame timeFrame = task.getTimeFrame();
+				if(timeFrame.endsOnTheSameDay(day)) {
+					mustDo.add(task);
+				}
+				if(!task.getStatus() && timeFrame.endsAfter(day) && !timeFrame.endsOnTheSameDay(day) &&
+						(timeFrame.startsBefore(day) || timeFrame.startsTheSameDay(day))) {
+					shouldDo.add(task);
+				}
+				if(!timeFrame.endsAfter(day) && !timeFrame.endsOnTheSameDay(day) && !task.getStatus()) {
+					missed.add(task);
+				}
+			}
+
+			Collections.sort(mustDo, new TaskComparator());
+			Collections.sort(shouldDo, new TaskComparator());
+			Collections.sort(missed, new TaskComparator());
+
+			assertEquals(ids(mustDo), index.endingOn(day));
+			assertEquals(ids(shouldDo), index.shouldDo(day));
+			assertEquals(ids(missed), index.missed(day));
+		}
+	}
+}
@@ -0,0 +1,277 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import logic.Logic;
+import parser.TodoParser;
+import parser.util.Clock;
+
+import commons.datetypes.Precisely;
+import commons.tasks.Task;
+import commons.timeframes.FixPoint;
+import commons.timeframes.Whenever;
+
+import storage.SnapshotWriter;
+import storage.Storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyTest {
+
+	private static final int THREADS = 8;
+
+	private File file;
+
+	private ExecutorService executor;
+
+	@Before public void setUp() throws Exception {
+		file = File.createTempFile("concurrency", ".tasks");
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After public void tearDown() {
+		executor.shutdownNow();
+		Storage.getSegmentFile(file).delete();
+		Storage.getJournalFile(file).delete();
+		SnapshotWriter.getTemporaryFile(file).delete();
+		file.delete();
+	}
+
+	/**
+	 * Runs a task in every thread at once, and waits for all of them.
+	 */
+	private <T> List<T> runAll(final Callable<T> task) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<T>> futures = new ArrayList<Future<T>>();
+
+		for(int i = 0; i < THREADS; i++) {
+			futures.add(executor.submit(new Callable<T>() {
+
+				@Override
+				public T call() throws Exception {
+					start.await();
+					return task.call();
+				}
+			}));
+		}
+
+		start.countDown();
+		List<T> results = new ArrayList<T>();
+		for(Future<T> future : futures) {
+			results.add(future.get());
+		}
+		return results;
+	}
+
+	/**
+	 * Tests that ids allocated in several threads are distinct, one by one and leased in blocks.
+	 */
+	@Test public void testIdAllocation() throws Exception {
+		Storage storage = new Storage(file);
+		checkIdAllocation(storage);
+
+		storage.setIdBlockSize(64);
+		checkIdAllocation(storage);
+		storage.close();
+	}
+
+	private void checkIdAllocation(final Storage storage) throws Exception {
+		List<List<Integer>> results = runAll(new Callable<List<Integer>>() {
+
+			@Override
+			public List<Integer> call() {
+				List<Integer> ids = new ArrayList<Integer>();
+				for(int i = 0; i < 1000; i++) {
+					ids.add(storage.allocateId());
+				}
+				return ids;
+			}
+		});
+
+		Set<Integer> ids = new HashSet<Integer>();
+		for(List<Integer> result : results) {
+			ids.addAll(result);
+		}
+		assertEquals(THREADS * 1000, ids.size());
+	}
+
+	/**
+	 * Tests that the ids leased by a session are never given by the next one.
+	 */
+	@Test public void testLeasedIdsPersisted() throws Exception {
+		Storage storage = new Storage(file);
+		storage.setIdBlockSize(64);
+		Task task = new Task("leased", new Whenever(), storage.allocateId());
+		storage.add(task);
+		int leased = storage.allocateId();
+		storage.close();
+
+		storage = new Storage(file);
+		assertTrue(storage.allocateId() > leased);
+		storage.close();
+	}
+
+	/**
+	 * Tests that readers see consistent snapshots, lookups and queries while Tasks are added.
+	 */
+	@Test public void testReadersAndWriter() throws Exception {
+		Storage storage = new Storage(file, true);
+		final Logic logic = new Logic(storage);
+		final List<Task> tasks = new ArrayList<Task>();
+		for(int i = 0; i < 2000; i++) {
+			tasks.add(new Task("task " + i, new FixPoint(new Precisely(new Date(i * 60000L))), storage.allocateId()));
+		}
+
+		Future<?> writer = executor.submit(new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				for(Task task : tasks) {
+					logic.add(task);
+				}
+				return null;
+			}
+		});
+
+		List<Boolean> results = runAll(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				int size = 0;
+				for(int i = 0; i < 200; i++) {
+					List<Task> all = logic.within("");
+					assertTrue(all.size() >= size);
+					size = all.size();
+
+					for(int j = 0; j < size; j++) {
+						assertEquals(tasks.get(j).getId(), all.get(j).getId());
+					}
+					if(size > 0) {
+						Task last = all.get(size - 1);
+						assertEquals(last.getContent(), logic.searchWithID(last.getId()).getContent());
+						assertTrue(logic.clashWith(last.getId()).isEmpty());
+
+						boolean found = false;
+						for(Task match : logic.search(last.getContent())) {
+							found |= match.getId() == last.getId();
+						}
+						assertTrue(found);
+					}
+				}
+				return true;
+			}
+		});
+
+		writer.get();
+		assertEquals(Collections.nCopies(THREADS, true), results);
+		assertEquals(2000, storage.size());
+		storage.close();
+	}
+
+	/**
+	 * Tests that toggling the same Task from several threads loses no toggle.
+	 */
+	@Test public void testConcurrentToggles() throws Exception {
+		Storage storage = new Storage(file, true);
+		final Logic logic = new Logic(storage);
+		final Task task = new Task("toggled", new Whenever(), logic.allocateId());
+		logic.add(task);
+
+		runAll(new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				for(int i = 0; i < 101; i++) {
+					logic.toggle(task.getId());
+				}
+				return null;
+			}
+		});
+
+		// An even number of toggles in all.
+		assertTrue(!logic.searchWithID(task.getId()).getStatus());
+		storage.close();
+		assertTrue(!new Storage(file, true).get(task.getId()).getStatus());
+	}
+
+	/**
+	 * Tests that one parser used by several threads at once gives what it gives in one thread,
+	 * with and without its cache.
+	 */
+	@Test public void testConcurrentParsing() throws Exception {
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(2012, Calendar.MARCH, 30, 17, 45);
+		Clock clock = Clock.fixed(calendar.getTimeInMillis());
+
+		final List<String> texts = new ArrayList<String>();
+		String[] timeFrames = {"today", "tomorrow 9am", "by friday", "by next monday 6:30pm", "from 3/4 noon",
+				"from 12 dec 2012 to 2 jan 2013", "yesterday", "this sunday midnight", "sat 31 mar 2012",
+				"between 10am and 2pm", "tuesday next week", "by 29 feb", "from blue moon"};
+		for(String timeFrame : timeFrames) {
+			texts.add(timeFrame);
+			texts.add(timeFrame + ", call home");
+			texts.add("write report | " + timeFrame);
+		}
+
+		List<String> expected = parseAll(new TodoParser(0, clock), texts, 0);
+		for(final TodoParser parser : new TodoParser[] {new TodoParser(0, clock), new TodoParser(16, clock)}) {
+			List<List<String>> results = runAll(new Callable<List<String>>() {
+
+				@Override
+				public List<String> call() {
+					List<String> results = new ArrayList<String>();
+					for(int i = 0; i < 50; i++) {
+						results = parseAll(parser, texts, i);
+					}
+					return results;
+				}
+			});
+
+			assertEquals(Collections.nCopies(THREADS, expected), results);
+		}
+	}
+
+	/**
+	 * Parses every text as a TimeFrame and as a Task, starting from a shifted position.
+	 *
+	 * @return the results, in the order of the texts.
+	 */
+	private static List<String> parseAll(TodoParser parser, List<String> texts, int shift) {
+		String[] results = new String[texts.size()];
+		for(int j = 0; j < texts.size(); j++) {
+			int i = (j + shift) % texts.size();
+			String text = texts.get(i);
+			StringBuilder result = new StringBuilder();
+			try {
+				result.append(parser.getTimeFrame(text));
+			} catch(Exception e) {
+				result.append("no timeframe");
+			}
+			try {
+				Task task = parser.getTask(text);
+				result.append(" / ").append(task.getContent()).append(" : ").append(task.getTimeFrame());
+			} catch(Exception e) {
+				result.append(" / no task");
+			}
+			results[i] = result.toString();
+		}
+		return Arrays.asList(results);
+	}
+}
@@ -0,0 +1,96 @@
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import commons.datetypes.DateType;
+import commons.datetypes.OnTheDay;
+import commons.datetypes.Precisely;
+
+import static org.junit.Assert.assertEquals;
+
+public class DateTypeTest {
+
+	private static final long HOUR = 3600000L;
+
+	private static boolean calendarSameDay(Date date1, Date date2) {
+		Calendar cal1 = Calendar.getInstance();
+		cal1.setTime(date1);
+		Calendar cal2 = Calendar.getInstance();
+		cal2.setTime(date2);
+		return cal1.get(Calendar.YEAR) == cal2.get(Calendar.YEAR) &&
+				cal1.get(Calendar.DAY_OF_YEAR) == cal2.get(Calendar.DAY_OF_YEAR);
+	}
+
+	/**
+	 * Tests the comparisons against Calendar, around DST changes, in several time zones.
+	 * The same instances are compared in every zone, so their cached days must follow the zone once refreshed.
+	 */
+	@Test public void testComparisons() {
+		TimeZone zone = TimeZone.getDefault();
+		Random random = new Random(5);
+
+		DateType[] dates = new DateType[200];
+		for(int i = 0; i < dates.length; i++) {
+			// Around the end of March 2014 and of October 2014, and before the epoch.
+			long base = i % 3 == 0 ? 1395900000000L : (i % 3 == 1 ? 1414300000000L : -1000000000L);
+			Date date = new Date(base + random.nextInt(24 * 6) * HOUR + random.nextInt(60) * 60000L);
+			dates[i] = i % 2 == 0 ? new Precisely(date) : new OnTheDay(date);
+		}
+
+		try {
+			for(String id : new String[] {"UTC", "Europe/London", "America/Sao_Paulo", "Asia/Kathmandu", "Pacific/Apia"}) {
+				TimeZone.setDefault(TimeZone.getTimeZone(id));
+				DateType.refreshDefaultZone();
+
+				for(DateType date1 : dates) {
+					for(DateType date2 : dates) {
+						Date date = date2.getDate();
+						boolean sameDay = calendarSameDay(date1.getDate(), date);
+						String message = id + " " + date1.timestamp() + " " + date.getTime();
+
+						assertEquals(message, sameDay, date1.sameDay(date));
+						if(date1.isPrecise()) {
+							assertEquals(message, date1.getDate().before(date), date1.before(date));
+							assertEquals(message, date1.getDate().after(date), date1.after(date));
+							assertEquals(message, date1.getDate().equals(date), date1.sameTime(date));
+						} else {
+							assertEquals(message, date1.getDate().before(date) && !sameDay, date1.before(date));
+							assertEquals(message, date1.getDate().after(date) && !sameDay, date1.after(date));
+							assertEquals(message, sameDay, date1.sameTime(date));
+						}
+						assertEquals(message, sameDay, date1.epochDay() == date2.epochDay());
+					}
+				}
+			}
+		} finally {
+			TimeZone.setDefault(zone);
+			DateType.refreshDefaultZone();
+		}
+	}
+
+	/**
+	 * Tests the start of the days against Calendar, over the DST changes of several years,
+	 * some of which fall at midnight.
+	 */
+	@Test public void testStartOfDay() {
+		for(String id : new String[] {"UTC", "Europe/London", "America/Sao_Paulo", "Asia/Kathmandu", "Pacific/Apia"}) {
+			TimeZone zone = TimeZone.getTimeZone(id);
+			Calendar cal = Calendar.getInstance(zone);
+
+			// From 2011 to 2015, every 6 hours.
+			for(long time = 1293840000000L; time < 1451606400000L; time += 6 * HOUR) {
+				cal.setTimeInMillis(time);
+				cal.set(Calendar.HOUR_OF_DAY, 0);
+				cal.set(Calendar.MINUTE, 0);
+				cal.set(Calendar.SECOND, 0);
+				cal.set(Calendar.MILLISECOND, 0);
+
+				assertEquals(id + " " + time, cal.getTimeInMillis(),
+						DateType.startOfDay(DateType.epochDay(time, zone), zone));
+			}
+		}
+	}
+}
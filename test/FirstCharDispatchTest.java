@@ -0,0 +1,59 @@
+import org.codehaus.jparsec.Parser;
+import org.codehaus.jparsec.functors.Map;
+import org.junit.Test;
+
+import parser.util.FirstCharDispatch;
+
+import static org.codehaus.jparsec.Parsers.longest;
+import static org.codehaus.jparsec.Scanners.INTEGER;
+import static org.codehaus.jparsec.Scanners.isChar;
+import static org.codehaus.jparsec.Scanners.stringCaseInsensitive;
+import static org.junit.Assert.assertEquals;
+
+public class FirstCharDispatchTest {
+
+	private static final Parser<String> NUMBER = INTEGER.map(prefix("number "));
+	private static final Parser<String> NUMBER_RANGE = INTEGER.followedBy(isChar('-')).followedBy(INTEGER).source().map(prefix("range "));
+	private static final Parser<String> TODAY = stringCaseInsensitive("today").source().map(prefix("day "));
+	private static final Parser<String> TOMORROW = stringCaseInsensitive("tomorrow").source().map(prefix("day "));
+	private static final Parser<String> WORD = stringCaseInsensitive("to").source().map(prefix("word "));
+	private static final Parser<String> ANYTHING = isChar(' ').many().source().map(prefix("blank "));
+
+	private static Map<String, String> prefix(final String prefix) {
+		return new Map<String, String>() {
+
+			@Override
+			public String map(String from) {
+				return prefix + from;
+			}
+		};
+	}
+
+	private static String parse(Parser<String> parser, String text) {
+		try {
+			return parser.parse(text);
+		} catch(Exception e) {
+			return "fail";
+		}
+	}
+
+	/**
+	 * Tests that the dispatch gives what the longest of every alternative gives, ties included.
+	 */
+	@Test public void testSameAsLongest() {
+		@SuppressWarnings("unchecked")
+		Parser<String> expected = longest(NUMBER, NUMBER_RANGE, TODAY, TOMORROW, WORD, ANYTHING);
+		Parser<String> dispatch = new FirstCharDispatch<String>()
+			.add(NUMBER, FirstCharDispatch.DIGITS)
+			.add(NUMBER_RANGE, FirstCharDispatch.DIGITS)
+			.add(TODAY, "t")
+			.add(TOMORROW, FirstCharDispatch.initials("Tomorrow"))
+			.add(WORD, "T")
+			.addAny(ANYTHING)
+			.longest();
+
+		for(String text : new String[] {"12", "12-14", "12-", "today", "TOMORROW", "to", "To", "  ", "", "x", "tod"}) {
+			assertEquals(text, parse(expected, text), parse(dispatch, text));
+		}
+	}
+}
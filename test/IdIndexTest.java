@@ -0,0 +1,44 @@
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import storage.IdIndex;
+
+import static org.junit.Assert.assertEquals;
+
+public class IdIndexTest {
+
+	/**
+	 * Tests the index against a HashMap, with keys colliding often.
+	 */
+	@Test public void testRandomOperations() {
+		IdIndex index = new IdIndex();
+		Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+		Random random = new Random(42);
+
+		for(int i = 0; i < 100000; i++) {
+			int key = random.nextInt(2000);
+			int operation = random.nextInt(3);
+
+			if(operation == 0) {
+				index.put(key, i);
+				expected.put(key, i);
+			} else if(operation == 1) {
+				Integer value = expected.remove(key);
+				assertEquals(value == null ? IdIndex.MISSING : value.intValue(), index.remove(key));
+			} else {
+				Integer value = expected.get(key);
+				assertEquals(value == null ? IdIndex.MISSING : value.intValue(), index.get(key));
+			}
+			assertEquals(expected.size(), index.size());
+		}
+
+		for(int key = 0; key < 2000; key++) {
+			Integer value = expected.get(key);
+			assertEquals(value == null ? IdIndex.MISSING : value.intValue(), index.get(key));
+		}
+	}
+}
@@ -0,0 +1,158 @@
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import logic.IntervalIndex;
+
+import commons.datetypes.DateType;
+import commons.datetypes.OnTheDay;
+import commons.datetypes.Precisely;
+import commons.tasks.Task;
+import commons.timeframes.Between;
+import commons.timeframes.By;
+import commons.timeframes.FixPoint;
+import commons.timeframes.From;
+import commons.timeframes.TimeFrame;
+import commons.timeframes.Whenever;
+
+import static org.junit.Assert.assertEquals;
+
+public class IntervalIndexTest {
+
+	private static final long HOUR = 3600000L;
+
+	private Random random = new Random(7);
+
+	private DateType randomDate() {
+		// Some days apart, with the same hours coming back, so that bounds are often equal.
+		Date date = new Date(1400000000000L + random.nextInt(24 * 10) * HOUR);
+		return random.nextBoolean() ? new Precisely(date) : new OnTheDay(date);
+	}
+
+	private TimeFrame randomTimeFrame() {
+		switch(random.nextInt(5)) {
+		case 0: return new FixPoint(randomDate());
+		case 1: return new By(randomDate());
+		case 2: return new From(randomDate());
+		case 3: return new Between(randomDate(), randomDate());
+		default: return new Whenever();
+		}
+	}
+
+	/**
+	 * Tests that the candidates of the index hold every superimposing Task, in both directions,
+	 * as Tasks are added, replaced and removed.
+	 */
+	@Test public void testCandidates() {
+		IntervalIndex index = new IntervalIndex();
+		List<Task> tasks = new ArrayList<Task>();
+
+		for(int i = 0; i < 600; i++) {
+			Task task = new Task("task " + i, randomTimeFrame(), i);
+			tasks.add(task);
+			index.add(task);
+		}
+		for(int i = 0; i < 600; i += 4) {
+			index.remove(tasks.get(i));
+			Task task = tasks.get(i).withTimeFrame(randomTimeFrame());
+			tasks.set(i, task);
+			index.add(task);
+		}
+		for(int i = 1; i < 600; i += 4) {
+			index.remove(tasks.get(i));
+		}
+		for(int i = 597; i >= 1; i -= 4) {
+			tasks.remove(i);
+		}
+
+		// The index only holds ids, resolved here as the Storage resolves them.
+		Map<Integer, Task> byId = new HashMap<Integer, Task>();
+		for(Task task : tasks) {
+			byId.put(task.getId(), task);
+		}
+
+		for(int q = 0; q < 300; q++) {
+			TimeFrame query = randomTimeFrame();
+			Set<Integer> clashing = new HashSet<Integer>();
+			Set<Integer> within = new HashSet<Integer>();
+			Set<Integer> expectedClashing = new HashSet<Integer>();
+			Set<Integer> expectedWithin = new HashSet<Integer>();
+
+			List<Integer> candidates = index.overlapping(query);
+			for(int id : candidates) {
+				if(byId.get(id).getTimeFrame().superimpose(query)) {
+					clashing.add(id);
+				}
+			}
+			candidates.addAll(index.getWhenever());
+			for(int id : candidates) {
+				if(query.superimpose(byId.get(id).getTimeFrame())) {
+					within.add(id);
+				}
+			}
+
+			for(Task task : tasks) {
+				if(task.getTimeFrame().getType() != TimeFrame.WHENEVER && task.getTimeFrame().superimpose(query)) {
+					expectedClashing.add(task.getId());
+				}
+				if(query.superimpose(task.getTimeFrame())) {
+					expectedWithin.add(task.getId());
+				}
+			}
+
+			assertEquals(expectedClashing, clashing);
+			assertEquals(expectedWithin, within);
+		}
+	}
+
+	/**
+	 * Tests that Tasks are removed from the node they were added at, even once the default time zone,
+	 * which the bounds of the dates which are not precise depend on, has changed.
+	 */
+	@Test public void testRemoveAfterZoneChange() {
+		TimeZone zone = TimeZone.getDefault();
+		try {
+			TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+			DateType.refreshDefaultZone();
+
+			IntervalIndex index = new IntervalIndex();
+			List<Task> tasks = new ArrayList<Task>();
+			for(int id = 0; id < 50; id++) {
+				Task task = new Task("task " + id, new FixPoint(new OnTheDay(new Date(1400000000000L + id * HOUR))), id);
+				tasks.add(task);
+				index.add(task);
+			}
+
+			TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Apia"));
+			DateType.refreshDefaultZone();
+
+			// Modified as the Storage does, removing a Task and adding its new version.
+			for(Task task : tasks) {
+				index.remove(task);
+				index.add(task.withContent("modified"));
+			}
+
+			TimeFrame all = new Between(new Precisely(new Date(1300000000000L)), new Precisely(new Date(1500000000000L)));
+			List<Integer> ids = index.overlapping(all);
+			assertEquals(50, ids.size());
+			assertEquals(50, new HashSet<Integer>(ids).size());
+
+			for(Task task : tasks) {
+				index.remove(task);
+			}
+			assertEquals(0, index.overlapping(all).size());
+		} finally {
+			TimeZone.setDefault(zone);
+			DateType.refreshDefaultZone();
+		}
+	}
+}
@@ -0,0 +1,200 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import logic.Logic;
+
+import commons.datetypes.OnTheDay;
+import commons.datetypes.Precisely;
+import commons.tasks.Task;
+import commons.timeframes.Between;
+import commons.timeframes.By;
+import commons.timeframes.FixPoint;
+import commons.timeframes.TimeFrame;
+import commons.timeframes.Whenever;
+
+import storage.Durability;
+import storage.SnapshotWriter;
+import storage.Storage;
+import storage.StorageBackend;
+import storage.StorageFormat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogicTest {
+
+	private static final int TASKS = 20000;
+
+	private static final long DAY = 86400000L;
+
+	private static final String[] WORDS = {"meeting", "report", "call", "lunch", "review", "send", "buy", "plan"};
+
+	private File file;
+
+	@Before public void createFile() throws Exception {
+		file = File.createTempFile("logic", ".tasks");
+	}
+
+	@After public void deleteFile() {
+		Storage.getSegmentFile(file).delete();
+		Storage.getJournalFile(file).delete();
+		SnapshotWriter.getTemporaryFile(file).delete();
+		file.delete();
+	}
+
+	/**
+	 * Writes a storage file of TASKS Tasks of every kind.
+	 */
+	private void writeTasks() throws Exception {
+		List<Task> tasks = new ArrayList<Task>();
+		for(int id = 1; id <= TASKS; id++) {
+			String content = WORDS[id % WORDS.length] + " " + WORDS[id / WORDS.length % WORDS.length] + " " + id;
+			Date date = new Date(1400000000000L + id % 1000 * 3600000L);
+			TimeFrame timeFrame;
+			switch(id % 4) {
+			case 0:
+				timeFrame = new FixPoint(new Precisely(date));
+				break;
+			case 1:
+				timeFrame = new By(new OnTheDay(date));
+				break;
+			case 2:
+				timeFrame = new Between(new OnTheDay(date), new Precisely(new Date(date.getTime() + DAY)));
+				break;
+			default:
+				timeFrame = new Whenever();
+			}
+			tasks.add(new Task(content, timeFrame, id));
+		}
+		SnapshotWriter.write(file, tasks, TASKS + 1, StorageFormat.TEXT, false);
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 4; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Measures the heap Logic takes over its Storage, once every index has been queried.
+	 *
+	 * @return the heap of the indexes, in bytes.
+	 */
+	private long indexHeap(StorageBackend backend) throws Exception {
+		Storage storage = new Storage(file, false, Durability.NONE, StorageFormat.TEXT, backend);
+		long stored = usedHeap();
+
+		Logic logic = new Logic(storage);
+		assertEquals(logic.searchWords("report").size(), logic.search("port").size());
+		logic.getMustDoTasks(new Date(1400000000000L));
+		long indexed = usedHeap();
+
+		// Logic is still in use after the measure, so it is measured whole.
+		assertEquals(TASKS, logic.within("").size());
+		storage.close();
+		return indexed - stored;
+	}
+
+	/**
+	 * Tests that the indexes of Logic hold ids, not Tasks, so that the columnar backend
+	 * does not get its Tasks copied back onto the heap by them.
+	 */
+	@Test public void testColumnarHeap() throws Exception {
+		writeTasks();
+		long objects = indexHeap(StorageBackend.OBJECTS);
+		long columnar = indexHeap(StorageBackend.COLUMNAR);
+
+		assertTrue(columnar + " > " + objects, columnar < objects + objects / 4);
+	}
+
+	/**
+	 * Tests that the indexes of Logic do not copy the records of the off-heap backend
+	 * back onto the heap as Tasks.
+	 */
+	@Test public void testOffHeapHeap() throws Exception {
+		writeTasks();
+		long objects = indexHeap(StorageBackend.OBJECTS);
+		long offHeap = indexHeap(StorageBackend.OFF_HEAP);
+
+		assertTrue(offHeap + " > " + objects, offHeap < objects + objects / 4);
+	}
+
+	/**
+	 * Tests that search matches any part of the contents, and searchWords the start of their words.
+	 */
+	@Test public void testSearchSubstrings() throws Exception {
+		Logic logic = new Logic(new Storage(file, true));
+		logic.add(new Task("Send the report", new Whenever(), logic.allocateId()));
+		logic.add(new Task("Port of call", new Whenever(), logic.allocateId()));
+		logic.add(new Task("airport pickup", new Whenever(), logic.allocateId()));
+
+		assertEquals("[Send the report, Port of call, airport pickup]", contents(logic.search("port")));
+		assertEquals("[Send the report]", contents(logic.search("eport")));
+		assertEquals("[Port of call]", contents(logic.searchWords("port")));
+		assertEquals("[]", contents(logic.searchWords("eport")));
+	}
+
+	/**
+	 * Task counting the reads of its content.
+	 */
+	private static class CountingTask extends Task {
+		static final AtomicInteger reads = new AtomicInteger();
+
+		CountingTask(String content, int id) {
+			super(content, new Whenever(), id);
+		}
+
+		@Override
+		public String getContent() {
+			reads.incrementAndGet();
+			return super.getContent();
+		}
+	}
+
+	/**
+	 * Tests that the contents are only indexed by the first search, with the mutations made before.
+	 */
+	@Test public void testContentsIndexedOnFirstSearch() throws Exception {
+		Storage storage = new Storage(file, true);
+		List<Task> tasks = new ArrayList<Task>();
+		for(int i = 0; i < 10; i++) {
+			Task task = new CountingTask(WORDS[i % WORDS.length] + " " + i, storage.allocateId());
+			tasks.add(task);
+			storage.add(task);
+		}
+
+		CountingTask.reads.set(0);
+		Logic logic = new Logic(storage);
+		logic.getMustDoTasks(new Date());
+		logic.within("");
+		assertEquals(0, CountingTask.reads.get());
+
+		logic.delete(tasks.get(1).getId());
+		logic.add(new Task("report again", new Whenever(), logic.allocateId()));
+		assertEquals("[report 9, report again]", contents(logic.search("REPORT")));
+		assertEquals("[report 9, report again]", contents(logic.searchWords("rep")));
+		assertTrue(CountingTask.reads.get() > 0);
+
+		logic.modify(tasks.get(0).getId(), "reported");
+		assertEquals("[reported, report 9, report again]", contents(logic.search("port")));
+		storage.close();
+	}
+
+	private static String contents(List<Task> tasks) {
+		List<String> contents = new ArrayList<String>();
+		for(Task task : tasks) {
+			contents.add(task.getContent());
+		}
+		return contents.toString();
+	}
+}
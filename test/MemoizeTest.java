@@ -0,0 +1,111 @@
+import org.codehaus.jparsec.Parser;
+import org.codehaus.jparsec.error.ParserException;
+import org.codehaus.jparsec.functors.Map;
+import org.junit.Test;
+
+import static org.codehaus.jparsec.Parsers.longest;
+import static org.codehaus.jparsec.Parsers.or;
+import static org.codehaus.jparsec.Parsers.sequence;
+import static org.codehaus.jparsec.Scanners.INTEGER;
+import static org.codehaus.jparsec.Scanners.isChar;
+import static org.junit.Assert.assertEquals;
+
+public class MemoizeTest {
+
+	private int runs = 0;
+
+	/** Matches an integer, counting the runs which reach the end of it. */
+	private Parser<Integer> counted() {
+		return INTEGER.map(new Map<String, Integer>() {
+
+			@Override
+			public Integer map(String from) {
+				runs++;
+				return Integer.valueOf(from);
+			}
+		});
+	}
+
+	/**
+	 * Tests that a memoized parser shared by alternatives runs once per position, with the same results.
+	 */
+	@SuppressWarnings("unchecked")
+	@Test public void testMemoize() {
+		Parser<Integer> number = counted().memoize();
+		Parser<Integer> parser = longest(
+			number.followedBy(isChar('+')).followedBy(number),
+			number.followedBy(isChar('-')).followedBy(number),
+			number.followedBy(isChar('*')),
+			number);
+
+		assertEquals(Integer.valueOf(12), parser.parse("12-34"));
+		assertEquals(2, runs);
+
+		// Every parse has its own memo.
+		assertEquals(Integer.valueOf(7), parser.parse("7*"));
+		assertEquals(3, runs);
+
+		Parser<Integer> plain = counted();
+		runs = 0;
+		longest(plain.followedBy(isChar('-')).followedBy(plain), plain).parse("12-34");
+		assertEquals(3, runs);
+	}
+
+	/**
+	 * Tests that a memoized failure is replayed with its partial match, which commits sequences the same way.
+	 */
+	@SuppressWarnings("unchecked")
+	@Test public void testFailure() {
+		Parser<Void> partial = sequence(isChar('a'), isChar('b'));
+		Parser<Void> memoized = partial.memoize();
+
+		for(String text : new String[] {"ab", "ac", "a", "c"}) {
+			assertEquals(text, outcome(or(partial.optional(), isChar('a').next(isChar('c'))), text),
+					outcome(or(memoized.optional(), isChar('a').next(isChar('c'))), text));
+			assertEquals(text, outcome(or(sequence(partial, isChar('x')), partial), text),
+					outcome(or(sequence(memoized, isChar('x')), memoized), text));
+		}
+	}
+
+	/**
+	 * Tests that a memoized parser reports the same errors as the plain one, whichever alternative
+	 * ran it first, as its errors are replayed with its outcome.
+	 */
+	@SuppressWarnings("unchecked")
+	@Test public void testErrors() {
+		Parser<Void> partial = sequence(isChar('a'), isChar('b'), isChar('c'));
+		Parser<Void> memoized = partial.memoize();
+
+		for(String text : new String[] {"ab", "abx", "ax", "x", "abcd"}) {
+			assertEquals(text, error(or(sequence(partial, isChar('x')), partial.next(isChar('y')), isChar('z')), text),
+					error(or(sequence(memoized, isChar('x')), memoized.next(isChar('y')), isChar('z')), text));
+			assertEquals(text, error(or(partial.followedBy(isChar('d')), isChar('a').next(partial)), text),
+					error(or(memoized.followedBy(isChar('d')), isChar('a').next(memoized)), text));
+			assertEquals(text, error(sequence(partial.optional(), partial.optional(), isChar('q')), text),
+					error(sequence(memoized.optional(), memoized.optional(), isChar('q')), text));
+			// The condition of succeeds runs without recording errors.
+			assertEquals(text, error(sequence(partial.succeeds(), partial), text),
+					error(sequence(memoized.succeeds(), memoized), text));
+			assertEquals(text, error(or(partial.succeeds().next(isChar('z')), partial), text),
+					error(or(memoized.succeeds().next(isChar('z')), memoized), text));
+		}
+	}
+
+	private static String error(Parser<?> parser, String text) {
+		try {
+			parser.parse(text);
+			return "ok";
+		} catch(ParserException e) {
+			return e.getMessage();
+		}
+	}
+
+	private static String outcome(Parser<?> parser, String text) {
+		try {
+			parser.parse(text);
+			return "ok";
+		} catch(Exception e) {
+			return "fail";
+		}
+	}
+}
@@ -0,0 +1,80 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import logic.ParallelScan;
+
+import commons.tasks.Task;
+import commons.timeframes.Whenever;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ParallelScanTest {
+
+	private static final ParallelScan.Filter EVERY_THIRD = new ParallelScan.Filter() {
+
+		@Override
+		public boolean accept(Task task) {
+			return task.getId() % 3 != 0;
+		}
+	};
+
+	/** Order by content alone, so that many Tasks tie. */
+	private static final Comparator<Task> BY_CONTENT = new Comparator<Task>() {
+
+		@Override
+		public int compare(Task task1, Task task2) {
+			return task1.getContent().compareTo(task2.getContent());
+		}
+	};
+
+	private List<Task> randomTasks(int count) {
+		Random random = new Random(11);
+		List<Task> tasks = new ArrayList<Task>();
+		for(int i = 0; i < count; i++) {
+			tasks.add(new Task("task " + random.nextInt(500), new Whenever(), i));
+		}
+		return tasks;
+	}
+
+	/**
+	 * Tests that a parallel scan gives what a scan in the calling thread gives, ties in the same order.
+	 */
+	@Test public void testScanAgainstSequential() {
+		List<Task> tasks = randomTasks(100000);
+		ParallelScan sequential = new ParallelScan(Integer.MAX_VALUE);
+		ParallelScan parallel = new ParallelScan(1);
+
+		assertEquals(sequential.scan(tasks, EVERY_THIRD, BY_CONTENT), parallel.scan(tasks, EVERY_THIRD, BY_CONTENT));
+		assertEquals(sequential.scan(tasks, EVERY_THIRD, null), parallel.scan(tasks, EVERY_THIRD, null));
+		assertEquals(sequential.sort(tasks, BY_CONTENT), parallel.sort(tasks, BY_CONTENT));
+		assertEquals(sequential.sort(tasks, BY_CONTENT), parallel.sort(new LinkedList<Task>(tasks), BY_CONTENT));
+	}
+
+	/**
+	 * Tests that a failure of the filter in a thread of the pool is thrown to the caller.
+	 */
+	@Test public void testFailure() {
+		ParallelScan parallel = new ParallelScan(1);
+		try {
+			parallel.scan(randomTasks(50000), new ParallelScan.Filter() {
+
+				@Override
+				public boolean accept(Task task) {
+					if(task.getId() == 40000) {
+						throw new IllegalArgumentException("task 40000");
+					}
+					return true;
+				}
+			}, null);
+			fail();
+		} catch(IllegalArgumentException e) {
+			assertEquals("task 40000", e.getMessage());
+		}
+	}
+}
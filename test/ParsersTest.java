@@ -7,9 +7,12 @@ import org.codehaus.jparsec.Parser;
 import org.junit.Test;
 
 import commons.datetypes.DateType;
+import commons.exceptions.ParserException;
 import commons.tasks.Task;
+import commons.timeframes.TimeFrame;
 
 import parser.TodoParser;
+import parser.util.Clock;
 import parser.parsers.DateParsers;
 import parser.parsers.DateTypeParsers;
 import parser.parsers.Identifiers;
@@ -873,4 +876,83 @@ public class ParsersTest {
 			fail();
 		}
 	}
+	
+	/**
+	 * Tests that parsed Tasks and TimeFrames are cached by trimmed text, least recently used dropped first.
+	 */
+	@Test public void testCache() throws Exception {
+		TodoParser tester = new TodoParser(2);
+		
+		TimeFrame byFriday = tester.getTimeFrame("by friday");
+		assertTrue(byFriday == tester.getTimeFrame("  by friday "));
+		assertEquals(1, tester.getCacheHits());
+		assertEquals(1, tester.getCacheMisses());
+		
+		Task task = tester.getTask("tomorrow, buy milk");
+		assertTrue(task == tester.getTask("tomorrow, buy milk"));
+		assertEquals("buy milk", task.getContent());
+		assertEquals(2, tester.getCacheHits());
+		
+		tester.getTimeFrame("today");
+		tester.getTimeFrame("from monday");
+		assertTrue(byFriday != tester.getTimeFrame("by friday"));
+		
+		// Failures are not cached.
+		
+		try {
+			tester.getTimeFrame("by blue moon");
+			fail();
+		} catch(ParserException e) {
+			
+		}
+		assertEquals(2, tester.getCacheHits());
+		assertEquals(6, tester.getCacheMisses());
+		
+		TodoParser uncached = new TodoParser(0);
+		assertTrue(uncached.getTimeFrame("by friday") != uncached.getTimeFrame("by friday"));
+		assertEquals(0, uncached.getCacheHits());
+	}
+	
+	/**
+	 * Tests that relative dates resolve against the clock of the parser, read at each parse.
+	 */
+	@Test public void testClock() throws Exception {
+		// Wednesday 15 February 2012, 10:00.
+		final long[] now = {day(2012, Calendar.FEBRUARY, 15).getTime() + 10 * 3600 * 1000L};
+		TodoParser tester = new TodoParser(TodoParser.DEFAULT_CACHE_CAPACITY, new Clock() {
+			
+			@Override
+			public long currentTimeMillis() {
+				return now[0];
+			}
+		});
+		
+		assertTrue(tester.getTimeFrame("by today").endsOnTheSameDay(day(2012, Calendar.FEBRUARY, 15)));
+		assertTrue(tester.getTimeFrame("by tomorrow").endsOnTheSameDay(day(2012, Calendar.FEBRUARY, 16)));
+		assertTrue(tester.getTimeFrame("by yesterday").endsOnTheSameDay(day(2012, Calendar.FEBRUARY, 14)));
+		assertTrue(tester.getTimeFrame("by friday").endsOnTheSameDay(day(2012, Calendar.FEBRUARY, 17)));
+		assertTrue(tester.getTimeFrame("by 3 feb").endsOnTheSameDay(day(2013, Calendar.FEBRUARY, 3)));
+		assertTrue(tester.getTask("today, buy milk").getTimeFrame().endsOnTheSameDay(day(2012, Calendar.FEBRUARY, 15)));
+		
+		// The clock is read once per text, so tomorrow, a thursday, is not before thursday.
+		assertTrue(tester.getTimeFrame("tomorrow - thursday").endsOnTheSameDay(day(2012, Calendar.FEBRUARY, 23)));
+		
+		// The same parser, and its cache, follow the clock to the next day.
+		
+		now[0] += 24 * 3600 * 1000L;
+		assertTrue(tester.getTimeFrame("by tomorrow").endsOnTheSameDay(day(2012, Calendar.FEBRUARY, 17)));
+		assertTrue(tester.getTask("today, buy milk").getTimeFrame().endsOnTheSameDay(day(2012, Calendar.FEBRUARY, 16)));
+		
+		// Other parsers keep the system clock.
+		
+		assertTrue(new TodoParser().getTimeFrame("by today").endsOnTheSameDay(new Date()));
+		assertTrue(Clock.current() == Clock.SYSTEM);
+	}
+	
+	private static Date day(int year, int month, int day) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(year, month, day);
+		return calendar.getTime();
+	}
 }
@@ -0,0 +1,574 @@
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.util.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import commons.datetypes.OnTheDay;
+import commons.datetypes.Precisely;
+import commons.tasks.Task;
+import commons.timeframes.Between;
+import commons.timeframes.By;
+import commons.timeframes.FixPoint;
+import commons.timeframes.From;
+import commons.timeframes.Whenever;
+
+import storage.BinaryFormat;
+import storage.Durability;
+import storage.SnapshotWriter;
+import storage.Storage;
+import storage.StorageBackend;
+import storage.StorageFormat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StorageTest {
+
+	private File file;
+
+	@Before public void createFile() throws Exception {
+		file = File.createTempFile("storage", ".tasks");
+	}
+
+	@After public void deleteFile() {
+		Storage.getSegmentFile(file).delete();
+		Storage.getJournalFile(file).delete();
+		SnapshotWriter.getTemporaryFile(file).delete();
+		file.delete();
+	}
+
+	/**
+	 * Tests that the Tasks are read back as they were written.
+	 */
+	@Test public void testRewrite() throws Exception {
+		Storage storage = new Storage(file);
+		storage.add(new Task("whenever", new Whenever(), storage.allocateId()));
+		storage.add(new Task("by", new By(new Precisely(new Date(1000000))), storage.allocateId()));
+		storage.add(new Task("between", new Between(new OnTheDay(new Date(0)), new OnTheDay(new Date(86400000))), storage.allocateId()));
+
+		List<Task> tasks = new Storage(file).getAll();
+		assertEquals(3, tasks.size());
+		assertEquals("whenever", tasks.get(0).getContent());
+		assertEquals(1000000, ((By) tasks.get(1).getTimeFrame()).getDate().timestamp());
+		assertTrue(((By) tasks.get(1).getTimeFrame()).getDate().isPrecise());
+		assertEquals(86400000, ((Between) tasks.get(2).getTimeFrame()).getEnd().timestamp());
+	}
+
+	/**
+	 * Tests that a journaled Storage replays its mutations, without rewriting the storage file.
+	 */
+	@Test public void testJournal() throws Exception {
+		Storage storage = new Storage(file);
+		storage.add(new Task("first", new Whenever(), storage.allocateId()));
+		storage.add(new Task("second", new Whenever(), storage.allocateId()));
+		long length = file.length();
+
+		storage = new Storage(file, true);
+		List<Task> tasks = storage.getAll();
+
+		Task third = new Task("third", new Whenever(), storage.allocateId());
+		storage.add(third);
+
+		storage.modify(tasks.get(0).withStatus(true));
+		storage.delete(tasks.get(1));
+
+		assertEquals(length, file.length());
+
+		tasks = new Storage(file, true).getAll();
+		assertEquals(2, tasks.size());
+		assertEquals("first", tasks.get(0).getContent());
+		assertTrue(tasks.get(0).getStatus());
+		assertEquals("third", tasks.get(1).getContent());
+		assertEquals(third.getId(), tasks.get(1).getId());
+	}
+
+	/**
+	 * Tests that a record torn by a crash is skipped when replaying the journal.
+	 */
+	@Test public void testTornRecord() throws Exception {
+		Storage storage = new Storage(file, true);
+		storage.add(new Task("kept", new Whenever(), storage.allocateId()));
+
+		PrintWriter writer = new PrintWriter(new FileOutputStream(Storage.getJournalFile(file), true));
+		writer.print("<A>\t<12>\t<fal");
+		writer.close();
+
+		try {
+			List<Task> tasks = new Storage(file, true).getAll();
+			assertEquals(1, tasks.size());
+			assertEquals("kept", tasks.get(0).getContent());
+		} catch(Exception e) {
+			fail();
+		}
+	}
+
+	/**
+	 * Tests that a record appended after a torn one, on reopening, is not lost with it.
+	 */
+	@Test public void testAppendAfterTornRecord() throws Exception {
+		Storage storage = new Storage(file, true);
+		storage.add(new Task("kept", new Whenever(), storage.allocateId()));
+		storage.close();
+
+		PrintWriter writer = new PrintWriter(new FileOutputStream(Storage.getJournalFile(file), true));
+		writer.print("<A>\t<12>\t<fal");
+		writer.close();
+
+		storage = new Storage(file, true);
+		storage.add(new Task("appended", new Whenever(), storage.allocateId()));
+		storage.close();
+
+		List<Task> tasks = new Storage(file, true).getAll();
+		assertEquals(2, tasks.size());
+		assertEquals("kept", tasks.get(0).getContent());
+		assertEquals("appended", tasks.get(1).getContent());
+	}
+
+	/**
+	 * Tests that compacting the journal keeps every mutation, and merges them in the storage file.
+	 */
+	@Test public void testCompaction() throws Exception {
+		Storage storage = new Storage(file, true);
+		storage.setCompactionThresholds(0, 1);
+
+		for(int i = 0; i < 50; i++) {
+			Task task = new Task("task " + i, new Whenever(), storage.allocateId());
+			storage.add(task);
+			if(i % 2 == 0) {
+				storage.delete(task);
+			} else {
+				storage.modify(task.withStatus(true));
+			}
+		}
+		storage.close();
+
+		assertTrue(!Storage.getSegmentFile(file).exists());
+		assertTrue(file.length() > 0);
+
+		storage = new Storage(file, true);
+		List<Task> tasks = storage.getAll();
+		assertEquals(25, tasks.size());
+		for(int i = 0; i < 25; i++) {
+			assertEquals("task " + (2 * i + 1), tasks.get(i).getContent());
+			assertTrue(tasks.get(i).getStatus());
+		}
+		storage.close();
+	}
+
+	/**
+	 * Tests that a segment left by an interrupted compaction is merged on opening.
+	 */
+	@Test public void testInterruptedCompaction() throws Exception {
+		Storage storage = new Storage(file, true);
+		Task task = new Task("kept", new Whenever(), storage.allocateId());
+		storage.add(task);
+		storage.add(new Task("deleted", new Whenever(), storage.allocateId()));
+		storage.close();
+
+		assertTrue(Storage.getJournalFile(file).renameTo(Storage.getSegmentFile(file)));
+
+		storage = new Storage(file, true);
+		storage.delete(storage.getAll().get(1));
+		storage.close();
+
+		storage = new Storage(file, true);
+		List<Task> tasks = storage.getAll();
+		assertEquals(1, tasks.size());
+		assertEquals(task.getId(), tasks.get(0).getId());
+		assertTrue(!Storage.getSegmentFile(file).exists());
+		storage.close();
+	}
+
+	/**
+	 * Tests that a torn line in the storage file is skipped, and that writes replace the file.
+	 */
+	@Test public void testTornLine() throws Exception {
+		PrintWriter writer = new PrintWriter(new FileOutputStream(file));
+		writer.println("<false>\t<>\t<kept>");
+		writer.print("<true>\t<.12");
+		writer.close();
+
+		Storage storage = new Storage(file, false, Durability.ALWAYS);
+		assertEquals(1, storage.size());
+
+		storage.add(new Task("added", new Whenever(), storage.allocateId()));
+		assertTrue(!SnapshotWriter.getTemporaryFile(file).exists());
+
+		List<Task> tasks = new Storage(file).getAll();
+		assertEquals(2, tasks.size());
+		assertEquals("kept", tasks.get(0).getContent());
+		assertEquals("added", tasks.get(1).getContent());
+	}
+
+	/**
+	 * Tests that mutations committed in groups from several threads are all written.
+	 */
+	@Test public void testGroupCommit() throws Exception {
+		final Storage storage = new Storage(file, true, Durability.ALWAYS);
+		storage.setGroupCommit(true);
+
+		// Ids are allocated from the threads adding the Tasks.
+		final Task[][] batches = new Task[4][25];
+		for(int i = 0; i < 4; i++) {
+			for(int j = 0; j < 25; j++) {
+				batches[i][j] = new Task("task " + i + " " + j, new Whenever());
+			}
+		}
+
+		List<Thread> threads = new ArrayList<Thread>();
+		final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for(int i = 0; i < 4; i++) {
+			final int thread = i;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for(int j = 0; j < 25; j++) {
+						try {
+							Future<Void> future = storage.add(batches[thread][j].withId(storage.allocateId()));
+							synchronized(futures) {
+								futures.add(future);
+							}
+						} catch(Exception e) {
+							fail();
+						}
+					}
+				}
+			});
+		}
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		for(Future<Void> future : futures) {
+			future.get();
+		}
+		storage.close();
+
+		List<Task> tasks = new Storage(file, true).getAll();
+		assertEquals(100, tasks.size());
+	}
+
+	/**
+	 * Tests that the mutations queued when group commit is disabled are written before the next ones,
+	 * journaled or not.
+	 */
+	@Test public void testDisableGroupCommit() throws Exception {
+		for(boolean journaled : new boolean[] {false, true}) {
+			Storage storage = new Storage(file, journaled);
+			storage.setGroupCommit(true);
+			Task task = new Task("toggled", new Whenever(), storage.allocateId());
+			storage.add(task);
+			for(int i = 0; i < 200; i++) {
+				task = task.withStatus(!task.getStatus());
+				storage.modify(task);
+			}
+			storage.setGroupCommit(false);
+			storage.modify(task.withContent("last"));
+			storage.close();
+
+			Task read = new Storage(file, journaled).get(task.getId());
+			assertEquals("last", read.getContent());
+			assertEquals(task.getStatus(), read.getStatus());
+		}
+	}
+
+	/**
+	 * Tests that flushes racing the disabling of group commit return once the mutations are written,
+	 * instead of waiting for a writer which has stopped.
+	 */
+	@Test public void testFlushWhileDisablingGroupCommit() throws Exception {
+		final Storage storage = new Storage(file, true);
+		final List<Exception> failures = new ArrayList<Exception>();
+
+		for(int round = 0; round < 200; round++) {
+			storage.setGroupCommit(true);
+			storage.add(new Task("round " + round, new Whenever(), storage.allocateId()));
+
+			List<Thread> flushers = new ArrayList<Thread>();
+			for(int i = 0; i < 4; i++) {
+				flushers.add(new Thread() {
+					@Override
+					public void run() {
+						for(int j = 0; j < 50; j++) {
+							try {
+								storage.flush();
+							} catch(Exception e) {
+								synchronized(failures) {
+									failures.add(e);
+								}
+							}
+						}
+					}
+				});
+			}
+			for(Thread flusher : flushers) {
+				flusher.start();
+			}
+			storage.setGroupCommit(false);
+
+			for(Thread flusher : flushers) {
+				flusher.join(10000);
+				assertFalse("flush blocked in round " + round, flusher.isAlive());
+			}
+		}
+		assertEquals("[]", failures.toString());
+		storage.close();
+
+		assertEquals(200, new Storage(file, true).size());
+	}
+
+	/**
+	 * Tests that a text file is migrated to the binary format, and that its Tasks and journal are kept.
+	 */
+	@Test public void testBinaryMigration() throws Exception {
+		Storage storage = new Storage(file);
+		storage.add(new Task("whenever", new Whenever(), storage.allocateId()));
+		storage.add(new Task("fixpoint", new FixPoint(new Precisely(new Date(1000))), storage.allocateId()));
+		storage.add(new Task("from", new From(new OnTheDay(new Date(86400000))), storage.allocateId()));
+
+		storage = new Storage(file, true);
+		Task by = new Task("by", new By(new Precisely(new Date(2000))), storage.allocateId());
+		storage.add(by);
+		storage.delete(storage.getAll().get(0));
+		storage.close();
+
+		storage = new Storage(file, true, Durability.NONE, StorageFormat.BINARY);
+		assertTrue(BinaryFormat.isBinary(file));
+		storage.add(new Task("between", new Between(new OnTheDay(new Date(0)), new Precisely(new Date(3000))), storage.allocateId()));
+		storage.close();
+
+		storage = new Storage(file, true, Durability.NONE, StorageFormat.BINARY);
+		storage.compact();
+		storage.close();
+
+		List<Task> tasks = new Storage(file, false, Durability.NONE, StorageFormat.BINARY).getAll();
+		assertEquals(4, tasks.size());
+		assertEquals("fixpoint", tasks.get(0).getContent());
+		assertTrue(((FixPoint) tasks.get(0).getTimeFrame()).getDate().isPrecise());
+		assertEquals(86400000, ((From) tasks.get(1).getTimeFrame()).getDate().timestamp());
+		assertTrue(!((From) tasks.get(1).getTimeFrame()).getDate().isPrecise());
+		assertEquals(by.getId(), tasks.get(2).getId());
+		assertEquals(2000, ((By) tasks.get(2).getTimeFrame()).getDate().timestamp());
+		assertTrue(!((Between) tasks.get(3).getTimeFrame()).getStart().isPrecise());
+		assertTrue(((Between) tasks.get(3).getTimeFrame()).getEnd().isPrecise());
+	}
+
+	/**
+	 * Tests that a record torn by a crash is skipped when reading a binary file, and content is kept in UTF-8.
+	 */
+	@Test public void testTornBinaryRecord() throws Exception {
+		Storage storage = new Storage(file, false, Durability.NONE, StorageFormat.BINARY);
+		storage.add(new Task("kept \u00e9t\u00e9", new Whenever(), storage.allocateId()));
+		storage.add(new Task("torn", new Whenever(), storage.allocateId()));
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 2);
+		raf.close();
+
+		List<Task> tasks = new Storage(file, false, Durability.NONE, StorageFormat.BINARY).getAll();
+		assertEquals(1, tasks.size());
+		assertEquals("kept \u00e9t\u00e9", tasks.get(0).getContent());
+	}
+
+	/**
+	 * Tests that a record length longer than the file is rejected before the record is allocated.
+	 */
+	@Test public void testCorruptBinaryRecordLength() throws Exception {
+		Storage storage = new Storage(file, false, Durability.NONE, StorageFormat.BINARY);
+		storage.add(new Task("kept", new Whenever(), storage.allocateId()));
+		storage.close();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(raf.length());
+		raf.writeInt(Integer.MAX_VALUE - 8);
+		raf.writeInt(42);
+		raf.close();
+
+		List<Task> tasks = new Storage(file, false, Durability.NONE, StorageFormat.BINARY).getAll();
+		assertEquals(1, tasks.size());
+		assertEquals("kept", tasks.get(0).getContent());
+	}
+
+	/**
+	 * Tests that a large binary file is read through its mapping, torn record included.
+	 */
+	@Test public void testMappedRead() throws Exception {
+		Storage storage = new Storage(file, true, Durability.NONE, StorageFormat.BINARY);
+		List<Task> tasks = new ArrayList<Task>();
+		for(int i = 0; i < 40000; i++) {
+			tasks.add(new Task("task " + i, new FixPoint(new Precisely(new Date(i))), i));
+		}
+		SnapshotWriter.write(file, tasks, 40000, StorageFormat.BINARY, false);
+		storage.close();
+		assertTrue(file.length() >= Storage.MAPPED_READ_THRESHOLD);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 1);
+		raf.close();
+
+		storage = new Storage(file, true, Durability.NONE, StorageFormat.BINARY);
+		storage.modify(storage.getAll().get(1).withContent("modified"));
+		storage.close();
+
+		tasks = new Storage(file, true, Durability.NONE, StorageFormat.BINARY).getAll();
+		assertEquals(39999, tasks.size());
+		assertEquals("task 0", tasks.get(0).getContent());
+		assertEquals("modified", tasks.get(1).getContent());
+		assertEquals(39998, ((FixPoint) tasks.get(39998).getTimeFrame()).getDate().timestamp());
+		assertEquals("task 39998", tasks.get(39998).withStatus(true).getContent());
+		assertEquals("task 39997", tasks.get(39997).withId(40000).getContent());
+	}
+
+	/**
+	 * Tests that ids are kept across sessions, and that the id of a deleted Task is never given again.
+	 */
+	@Test public void testPersistedIds() throws Exception {
+		Storage storage = new Storage(file);
+		Task first = new Task("first", new Whenever(), storage.allocateId());
+		Task second = new Task("second", new Whenever(), storage.allocateId());
+		Task third = new Task("third", new Whenever(), storage.allocateId());
+		storage.add(first);
+		storage.add(second);
+		storage.add(third);
+		storage.delete(first);
+		storage.delete(third);
+
+		// As if the application restarted.
+		storage = new Storage(file);
+		List<Task> tasks = storage.getAll();
+		assertEquals(1, tasks.size());
+		assertEquals(second.getId(), tasks.get(0).getId());
+		assertTrue(storage.allocateId() > third.getId());
+	}
+
+	/**
+	 * Tests that Tasks are found by id, and keep their order, after many deletions.
+	 */
+	@Test public void testIdLookup() throws Exception {
+		Storage storage = new Storage(file, true);
+		List<Task> tasks = new ArrayList<Task>();
+		for(int i = 0; i < 200; i++) {
+			Task task = new Task("task " + i, new Whenever(), storage.allocateId());
+			tasks.add(task);
+			storage.add(task);
+		}
+		for(int i = 0; i < 200; i += 3) {
+			storage.delete(tasks.get(i));
+		}
+
+		storage.modify(storage.get(tasks.get(100).getId()).withStatus(true));
+
+		assertEquals(133, storage.size());
+		assertTrue(!storage.contains(tasks.get(99).getId()));
+		assertTrue(storage.get(tasks.get(100).getId()).getStatus());
+		assertEquals("task 199", storage.get(tasks.get(199).getId()).getContent());
+
+		List<Task> all = storage.getAll();
+		assertEquals("task 1", all.get(0).getContent());
+		assertEquals("task 199", all.get(132).getContent());
+		storage.close();
+	}
+
+	/**
+	 * Tests that readers share a snapshot until a mutation publishes a new one.
+	 */
+	@Test public void testSnapshot() throws Exception {
+		Storage storage = new Storage(file);
+		Task task = new Task("task", new Whenever(), storage.allocateId());
+		storage.add(task);
+
+		List<Task> snapshot = storage.getAll();
+		assertTrue(snapshot == storage.getAll());
+		try {
+			snapshot.clear();
+			fail();
+		} catch(UnsupportedOperationException e) {
+		}
+
+		storage.modify(task.withStatus(true));
+		assertTrue(!snapshot.get(0).getStatus());
+		assertTrue(storage.getAll().get(0).getStatus());
+		assertEquals(task.getId(), storage.getAll().get(0).getId());
+	}
+
+	/**
+	 * Tests that the columnar backend holds the same Tasks as the object one.
+	 */
+	@Test public void testColumnarBackend() throws Exception {
+		checkBackend(StorageBackend.COLUMNAR);
+	}
+
+	/**
+	 * Tests that the off-heap backend holds the same Tasks as the object one.
+	 */
+	@Test public void testOffHeapBackend() throws Exception {
+		checkBackend(StorageBackend.OFF_HEAP);
+	}
+
+	/**
+	 * Checks that a backend holds the same Tasks as the object one, through modifications 
+	 * and deletions packing its slots and contents, and that its snapshots do not change afterwards.
+	 */
+	private void checkBackend(StorageBackend backend) throws Exception {
+		Storage storage = new Storage(file, false, Durability.NONE, StorageFormat.BINARY, backend);
+		List<Task> tasks = new ArrayList<Task>();
+		for(int i = 0; i < 300; i++) {
+			Task task;
+			switch(i % 5) {
+			case 0:
+				task = new Task("fix point \u00e9 " + i, new FixPoint(new Precisely(new Date(i * 1000L))), storage.allocateId());
+				break;
+			case 1:
+				task = new Task("by " + i, new By(new OnTheDay(new Date(i * 86400000L))), storage.allocateId());
+				break;
+			case 2:
+				task = new Task("from " + i, new From(new Precisely(new Date(-i * 1000L))), storage.allocateId());
+				break;
+			case 3:
+				task = new Task("between " + i, new Between(new OnTheDay(new Date(0)), new Precisely(new Date(i))), storage.allocateId());
+				break;
+			default:
+				task = new Task("", new Whenever(), storage.allocateId());
+			}
+			tasks.add(task);
+			storage.add(task);
+		}
+
+		List<Task> snapshot = storage.getAll();
+		String before = snapshot.toString();
+
+		for(int i = 0; i < 300; i += 2) {
+			storage.delete(tasks.get(i));
+		}
+		for(int i = 1; i < 300; i += 4) {
+			storage.modify(tasks.get(i).withContent("modified " + i).withStatus(true));
+		}
+
+		assertEquals(before, snapshot.toString());
+		assertEquals(150, storage.size());
+		assertEquals("modified 1", storage.get(tasks.get(1).getId()).getContent());
+		assertTrue(storage.get(tasks.get(1).getId()).getStatus());
+		assertEquals("between 3", storage.get(tasks.get(3).getId()).getContent());
+		assertTrue(((Between) storage.get(tasks.get(3).getId()).getTimeFrame()).getEnd().isPrecise());
+		storage.close();
+
+		String expected = new Storage(file, false, Durability.NONE, StorageFormat.BINARY).getAll().toString();
+		assertEquals(expected, 
+				new Storage(file, false, Durability.NONE, StorageFormat.BINARY, backend).getAll().toString());
+		assertEquals(150, new Storage(file, false, Durability.NONE, StorageFormat.BINARY).size());
+	}
+}
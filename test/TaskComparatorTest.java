@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import commons.datetypes.OnTheDay;
+import commons.datetypes.Precisely;
+import commons.tasks.Task;
+import commons.tasks.TaskComparator;
+import commons.timeframes.Between;
+import commons.timeframes.By;
+import commons.timeframes.FixPoint;
+import commons.timeframes.From;
+import commons.timeframes.TimeFrame;
+import commons.timeframes.Whenever;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TaskComparatorTest {
+
+	private Random random = new Random(5);
+
+	private Date randomDate() {
+		// Few distinct dates, so that many Tasks tie on them.
+		return new Date(1400000000000L + random.nextInt(6) * 43200000L);
+	}
+
+	private TimeFrame randomTimeFrame() {
+		switch(random.nextInt(5)) {
+		case 0: return new FixPoint(new Precisely(randomDate()));
+		case 1: return new By(new OnTheDay(randomDate()));
+		case 2: return new From(new Precisely(randomDate()));
+		case 3: return new Between(new OnTheDay(randomDate()), new Precisely(randomDate()));
+		default: return new Whenever();
+		}
+	}
+
+	/**
+	 * Tests that the order is total : antisymmetric, transitive, and equal only for the same id.
+	 */
+	@Test public void testTotalOrder() {
+		TaskComparator comparator = new TaskComparator();
+		List<Task> tasks = new ArrayList<Task>();
+		for(int i = 0; i < 60; i++) {
+			tasks.add(new Task("task " + i, randomTimeFrame(), i));
+		}
+
+		for(Task a : tasks) {
+			for(Task b : tasks) {
+				int ab = comparator.compare(a, b);
+				assertEquals(-Integer.signum(ab), Integer.signum(comparator.compare(b, a)));
+				assertEquals(a.getId() == b.getId(), ab == 0);
+
+				for(Task c : tasks) {
+					if(ab < 0 && comparator.compare(b, c) < 0) {
+						assertTrue(comparator.compare(a, c) < 0);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that sorting gives the same list whatever the order it starts from,
+	 * by type, then end, then start.
+	 */
+	@Test public void testDeterministicSort() {
+		List<Task> tasks = new ArrayList<Task>();
+		for(int i = 0; i < 500; i++) {
+			tasks.add(new Task("task " + i, randomTimeFrame(), i));
+		}
+		Collections.sort(tasks, new TaskComparator());
+
+		for(int i = 0; i < 10; i++) {
+			List<Task> shuffled = new ArrayList<Task>(tasks);
+			Collections.shuffle(shuffled, random);
+			Collections.sort(shuffled, new TaskComparator());
+			assertEquals(tasks, shuffled);
+		}
+
+		for(int i = 1; i < tasks.size(); i++) {
+			Task previous = tasks.get(i - 1);
+			Task task = tasks.get(i);
+			assertTrue(previous.getTimeFrame().getType() <= task.getTimeFrame().getType());
+			if(previous.getTimeFrame().getType() == TimeFrame.BY && task.getTimeFrame().getType() == TimeFrame.BY) {
+				assertTrue(!((By) task.getTimeFrame()).getDate().getDate().before(((By) previous.getTimeFrame()).getDate().getDate()));
+			}
+		}
+		assertEquals(TimeFrame.WHENEVER, tasks.get(tasks.size() - 1).getTimeFrame().getType());
+	}
+}
@@ -0,0 +1,49 @@
+
+import org.junit.Test;
+
+import logic.TokenIndex;
+
+import commons.tasks.Task;
+import commons.timeframes.Whenever;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TokenIndexTest {
+
+	/**
+	 * Tests prefix matching, AND of the terms, and incremental updates, on the ids of the Tasks.
+	 */
+	@Test public void testSearch() {
+		TokenIndex index = new TokenIndex();
+		Task meeting = new Task("Meeting with Bob, room 3", new Whenever(), 1);
+		Task report = new Task("Send the report to bob", new Whenever(), 2);
+		Task lunch = new Task("lunch", new Whenever(), 3);
+		index.add(meeting);
+		index.add(report);
+		index.add(lunch);
+
+		assertEquals("[1, 2]", index.search("BOB").toString());
+		assertEquals("[1]", index.search("meet bo").toString());
+		assertEquals("[]", index.search("meet report").toString());
+		assertEquals("[1]", index.search("3").toString());
+		assertEquals("[]", index.search("eeting").toString());
+		assertNull(index.search("?!"));
+
+		index.remove(report);
+		index.add(report.withContent("Send the minutes"));
+		assertEquals("[1]", index.search("bob").toString());
+		assertEquals("[2]", index.search("min").toString());
+
+		index.remove(lunch);
+		assertEquals("[]", index.search("lunch").toString());
+	}
+
+	/**
+	 * Tests that contents are split at anything but letters and digits.
+	 */
+	@Test public void testTokenize() {
+		assertEquals("[call, mom, 5pm, caf\u00e9]", TokenIndex.tokenize("Call MOM @5pm -- caf\u00e9, call").toString());
+		assertEquals("[]", TokenIndex.tokenize("?!").toString());
+	}
+}
@@ -0,0 +1,142 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import logic.TrigramIndex;
+
+import commons.tasks.Task;
+import commons.timeframes.Whenever;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrigramIndexTest {
+
+	/** Indexed Tasks, by id, to resolve the ids of the index as the Storage does. */
+	private Map<Integer, Task> tasks = new TreeMap<Integer, Task>();
+
+	private static String contents(List<Task> tasks) {
+		StringBuilder contents = new StringBuilder();
+		for(Task task : tasks) {
+			contents.append(task.getContent()).append(";");
+		}
+		return contents.toString();
+	}
+
+	private void add(TrigramIndex index, Task task) {
+		tasks.put(task.getId(), task);
+		index.add(task);
+	}
+
+	private void remove(TrigramIndex index, Task task) {
+		tasks.remove(task.getId());
+		index.remove(task);
+	}
+
+	/**
+	 * Searches a text as Logic does, checking the contents of the candidates.
+	 */
+	private String search(TrigramIndex index, String text) {
+		List<Integer> ids = index.candidates(text);
+		List<Task> found = new ArrayList<Task>();
+		for(int id : ids == null ? tasks.keySet() : ids) {
+			if(tasks.get(id).getContent().toLowerCase().contains(text.toLowerCase())) {
+				found.add(tasks.get(id));
+			}
+		}
+		return contents(found);
+	}
+
+	private String searchFuzzy(TrigramIndex index, String text) {
+		List<Integer> ids = index.searchFuzzy(text);
+		if(ids == null) {
+			return search(index, text);
+		}
+
+		List<Task> found = new ArrayList<Task>();
+		for(int id : ids) {
+			found.add(tasks.get(id));
+		}
+		return contents(found);
+	}
+
+	/**
+	 * Tests substring matching, short texts, and incremental updates.
+	 */
+	@Test public void testSearch() {
+		TrigramIndex index = new TrigramIndex();
+		Task birthday = new Task("Buy Birthday cake", new Whenever(), 1);
+		Task berth = new Task("Book a berth", new Whenever(), 2);
+		Task lunch = new Task("lunch at 12:30", new Whenever(), 3);
+		add(index, birthday);
+		add(index, berth);
+		add(index, lunch);
+
+		assertEquals("Buy Birthday cake;", search(index, "birth"));
+		assertEquals("Buy Birthday cake;", search(index, "DAY C"));
+		assertEquals("Buy Birthday cake;Book a berth;", search(index, "b"));
+		assertEquals("lunch at 12:30;", search(index, ":3"));
+		assertEquals("", search(index, "thbi"));
+
+		remove(index, berth);
+		add(index, berth.withContent("Book a birth certificate"));
+		assertEquals("Buy Birthday cake;Book a birth certificate;", search(index, "birth"));
+		assertEquals("", search(index, "berth"));
+
+		remove(index, lunch);
+		assertEquals("", search(index, "lunch"));
+	}
+
+	/**
+	 * Tests the search against a scan of random contents.
+	 */
+	@Test public void testSearchAgainstScan() {
+		Random random = new Random(7);
+		TrigramIndex index = new TrigramIndex();
+		List<Task> all = new ArrayList<Task>();
+
+		for(int id = 1; id <= 500; id++) {
+			StringBuilder content = new StringBuilder();
+			for(int i = random.nextInt(12); i >= 0; i--) {
+				content.append((char) ('a' + random.nextInt(4)));
+			}
+			Task task = new Task(content.toString(), new Whenever(), id);
+			all.add(task);
+			add(index, task);
+		}
+
+		for(int i = 0; i < 200; i++) {
+			StringBuilder text = new StringBuilder();
+			for(int j = random.nextInt(5); j >= 0; j--) {
+				text.append((char) ('a' + random.nextInt(4)));
+			}
+
+			List<Task> expected = new ArrayList<Task>();
+			for(Task task : all) {
+				if(task.getContent().contains(text)) {
+					expected.add(task);
+				}
+			}
+			assertEquals(text.toString(), contents(expected), search(index, text.toString()));
+		}
+	}
+
+	/**
+	 * Tests that fuzzy searches find contents with a typo, the closest first.
+	 */
+	@Test public void testSearchFuzzy() {
+		TrigramIndex index = new TrigramIndex();
+		add(index, new Task("Buy birthday cake", new Whenever(), 1));
+		add(index, new Task("Pay the bills", new Whenever(), 2));
+		add(index, new Task("Birthday party", new Whenever(), 3));
+		add(index, new Task("Thursday meeting", new Whenever(), 4));
+
+		assertEquals("", search(index, "brithday"));
+		assertEquals("Buy birthday cake;Birthday party;", searchFuzzy(index, "brithday"));
+		assertEquals("Birthday party;Buy birthday cake;", searchFuzzy(index, "birthday prty"));
+		assertEquals("Pay the bills;", searchFuzzy(index, "bil"));
+	}
+}